@@ -0,0 +1,120 @@
+package ru.anikson.cloudfilestorage.config.minio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Режимы выполнения блокирующего пути запроса: пул Tomcat из платформенных потоков против
+// виртуального потока на запрос. Каждый запрос раскладывает работу на задачи к MinIO через minioTaskExecutor
+// (как загрузка пакета файлов), задержка MinIO имитируется сном. Режим VIRTUAL требует Java 21.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200; // server.tomcat.threads.max по умолчанию
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private String mode;
+
+    @Param({"1000"})
+    private int concurrentRequests;
+
+    @Param({"8"})
+    private int tasksPerRequest;
+
+    @Param({"5"})
+    private int minioLatencyMillis;
+
+    private Executor requestExecutor;
+    private AsyncTaskExecutor minioTaskExecutor;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        MinioExecutorConfig config = new MinioExecutorConfig();
+        setField(config, "poolSize", 32);
+        setField(config, "queueCapacity", 1000);
+        setField(config, "virtualConcurrencyLimit", 256);
+
+        if (mode.equals("VIRTUAL")) {
+            requestExecutor = new VirtualThreadTaskExecutor("request-");
+            minioTaskExecutor = config.virtualMinioTaskExecutor();
+        } else {
+            ThreadPoolTaskExecutor tomcatThreads = new ThreadPoolTaskExecutor();
+            tomcatThreads.setCorePoolSize(TOMCAT_MAX_THREADS);
+            tomcatThreads.setMaxPoolSize(TOMCAT_MAX_THREADS);
+            tomcatThreads.setThreadNamePrefix("request-");
+            tomcatThreads.initialize();
+            requestExecutor = tomcatThreads;
+            minioTaskExecutor = config.minioTaskExecutor();
+            ((ThreadPoolTaskExecutor) minioTaskExecutor).initialize(); // В приложении это делает Spring
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (requestExecutor instanceof ThreadPoolTaskExecutor threads) {
+            threads.shutdown();
+        }
+        if (minioTaskExecutor instanceof ThreadPoolTaskExecutor threads) {
+            threads.shutdown();
+        } else if (minioTaskExecutor instanceof SimpleAsyncTaskExecutor executor) {
+            executor.close();
+        }
+    }
+
+    // Время обработки пачки одновременных запросов
+    @Benchmark
+    public int handleRequests() {
+        List<CompletableFuture<Void>> requests = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            requests.add(CompletableFuture.runAsync(this::handleRequest, requestExecutor));
+        }
+        CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).join();
+        return requests.size();
+    }
+
+    // Запрос ждёт все свои задачи к MinIO, как FileService.uploadResources
+    private void handleRequest() {
+        Semaphore permits = new Semaphore(8); // minio.upload.parallelism-per-request
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(tasksPerRequest);
+        for (int i = 0; i < tasksPerRequest; i++) {
+            permits.acquireUninterruptibly();
+            tasks.add(CompletableFuture.runAsync(this::callMinio, minioTaskExecutor)
+                    .whenComplete((result, e) -> permits.release()));
+        }
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void callMinio() {
+        try {
+            Thread.sleep(minioLatencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void setField(Object target, String name, int value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.setInt(target, value);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.anikson.cloudfilestorage.config.minio;
+
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import okhttp3.Headers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Клиент MinIO в памяти для бенчмарков: объекты лежат в Map, сеть не используется.
+// putObject вычитывает поток целиком, как при отправке в MinIO, но содержимое не сохраняет.
+public class InMemoryMinioClient extends MinioClient {
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    public InMemoryMinioClient() {
+        super(MinioClient.builder()
+                .endpoint("http://localhost:9000")
+                .credentials("benchmark", "benchmark")
+                .build());
+    }
+
+    public void put(String objectName, byte[] content) {
+        objects.put(objectName, content);
+    }
+
+    @Override
+    public GetObjectResponse getObject(GetObjectArgs args) {
+        byte[] content = objects.get(args.object());
+        if (content == null) {
+            throw new IllegalArgumentException("Object not found: " + args.object());
+        }
+        int offset = args.offset() != null ? args.offset().intValue() : 0;
+        int length = args.length() != null ? args.length().intValue() : content.length - offset;
+        return new GetObjectResponse(Headers.of(), args.bucket(), null, args.object(),
+                new ByteArrayInputStream(content, offset, length));
+    }
+
+    @Override
+    public ObjectWriteResponse putObject(PutObjectArgs args) throws IOException {
+        try (InputStream stream = args.stream()) {
+            stream.transferTo(OutputStream.nullOutputStream());
+        }
+        return new ObjectWriteResponse(Headers.of(), args.bucket(), null, args.object(), "benchmark", null);
+    }
+}
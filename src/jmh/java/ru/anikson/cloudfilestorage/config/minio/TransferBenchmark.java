@@ -0,0 +1,70 @@
+package ru.anikson.cloudfilestorage.config.minio;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Циклы копирования при загрузке и скачивании файла (без сети) и накладные расходы метрик клиента MinIO
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+
+    private static final String BUCKET = "benchmark";
+    private static final String OBJECT = "user-benchmark-files/file.bin";
+
+    @Param({"65536", "8388608"})
+    private int objectSize;
+
+    @Param({"false", "true"})
+    private boolean instrumented;
+
+    private MinioClient minioClient;
+    private byte[] content;
+
+    @Setup
+    public void setUp() {
+        content = new byte[objectSize];
+        new Random(42).nextBytes(content);
+        InMemoryMinioClient inMemoryClient = new InMemoryMinioClient();
+        inMemoryClient.put(OBJECT, content);
+        minioClient = instrumented ? new InstrumentedMinioClient(inMemoryClient, new SimpleMeterRegistry()) : inMemoryClient;
+    }
+
+    // Скачивание: тело ответа MinIO переписывается в выходной поток сервлета
+    @Benchmark
+    public long download() throws Exception {
+        try (InputStream stream = minioClient.getObject(GetObjectArgs.builder()
+                .bucket(BUCKET)
+                .object(OBJECT)
+                .build())) {
+            return stream.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    // Загрузка: содержимое multipart-файла передаётся в putObject с известным размером
+    @Benchmark
+    public ObjectWriteResponse upload() throws Exception {
+        return minioClient.putObject(PutObjectArgs.builder()
+                .bucket(BUCKET)
+                .object(OBJECT)
+                .stream(new ByteArrayInputStream(content), content.length, -1)
+                .build());
+    }
+}
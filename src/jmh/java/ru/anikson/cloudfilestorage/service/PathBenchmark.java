@@ -0,0 +1,53 @@
+package ru.anikson.cloudfilestorage.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.anikson.cloudfilestorage.service.metadata.ResourcePaths;
+
+import java.util.concurrent.TimeUnit;
+
+// Разбор путей: регулярные выражения (как в удалённом MinioService) против разбора по индексам в ResourcePaths
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class PathBenchmark {
+
+    @Param({"file.txt", "docs/reports/2024/q1/summary.pdf", "/docs/reports/2024/"})
+    private String path;
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+        blackhole.consume(getParentPath(path));
+        blackhole.consume(getFileName(path));
+    }
+
+    @Benchmark
+    public void resourcePaths(Blackhole blackhole) {
+        String canonical = ResourcePaths.file(path);
+        blackhole.consume(ResourcePaths.parentOf(canonical));
+        blackhole.consume(ResourcePaths.nameOf(canonical));
+    }
+
+    private static String getParentPath(String path) {
+        if (path.equals("/")) {
+            return "";
+        }
+        String normalized = path.replaceAll("^/+|/+$", "");
+        int lastSlash = normalized.lastIndexOf("/");
+        return lastSlash >= 0 ? normalized.substring(0, lastSlash) : "";
+    }
+
+    private static String getFileName(String path) {
+        if (path.equals("/")) {
+            return "";
+        }
+        String normalized = path.replaceAll("^/+|/+$", "");
+        return normalized.isEmpty() ? "" : normalized.substring(normalized.lastIndexOf("/") + 1);
+    }
+}
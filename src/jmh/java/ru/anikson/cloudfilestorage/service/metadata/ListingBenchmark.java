@@ -0,0 +1,77 @@
+package ru.anikson.cloudfilestorage.service.metadata;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.anikson.cloudfilestorage.entity.ResourceInfo;
+import ru.anikson.cloudfilestorage.entity.ResourceMetadata;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Сборка листинга большой папки: записи индекса -> ResourceInfo -> JSON-ответ, курсор следующей страницы
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ListingBenchmark {
+
+    @Param({"1000", "100000"})
+    private int entries;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private List<ResourceMetadata> rows;
+    private List<ResourceInfo> listing;
+
+    @Setup
+    public void setUp() {
+        rows = new ArrayList<>(entries);
+        ZonedDateTime lastModified = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+        for (int i = 0; i < entries; i++) {
+            boolean directory = i % 10 == 0; // Каждая десятая запись — папка
+            String name = (directory ? "folder-" : "document-") + i + (directory ? "" : ".pdf");
+            rows.add(ResourceMetadata.builder()
+                    .username("benchmark")
+                    .path("projects/archive/" + name + (directory ? "/" : ""))
+                    .parentPath("projects/archive/")
+                    .name(name)
+                    .type(directory ? "DIRECTORY" : "FILE")
+                    .size(directory ? null : 1024L * i)
+                    .etag(directory ? null : Integer.toHexString(i))
+                    .lastModified(directory ? null : lastModified.plusSeconds(i))
+                    .build());
+        }
+        listing = map();
+    }
+
+    @Benchmark
+    public List<ResourceInfo> map() {
+        return rows.stream()
+                .map(ResourceMetadataService::toListingEntry)
+                .toList();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return objectMapper.writeValueAsBytes(listing);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerialize() throws Exception {
+        return objectMapper.writeValueAsBytes(map());
+    }
+
+    @Benchmark
+    public ResourceMetadata cursorRoundTrip() {
+        return ListingCursor.decode(ListingCursor.encode(rows.get(rows.size() - 1)));
+    }
+}
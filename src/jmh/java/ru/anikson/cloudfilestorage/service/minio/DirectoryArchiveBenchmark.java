@@ -0,0 +1,103 @@
+package ru.anikson.cloudfilestorage.service.minio;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.anikson.cloudfilestorage.service.storage.CompressionService;
+import ru.anikson.cloudfilestorage.service.storage.InMemoryStorageBackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Потоковая упаковка папки в ZIP с окном предзагрузки; объекты читаются из хранилища в памяти
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class DirectoryArchiveBenchmark {
+
+    private static final int FILES = 200;
+
+    @Param({"16384", "1048576"})
+    private int fileSize;
+
+    @Param({"1", "6"})
+    private int compressionLevel;
+
+    private ExecutorService executor;
+    private DirectoryArchiveService directoryArchiveService;
+    private List<DirectoryArchiveService.ArchiveEntry> entries;
+
+    @Setup
+    public void setUp() throws Exception {
+        // Половина содержимого — текст (хорошо сжимается), половина — случайные байты
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        byte[] text = "cloud file storage benchmark line\n".getBytes();
+        for (int i = 0; i < fileSize / 2; i++) {
+            content[i] = text[i % text.length];
+        }
+
+        InMemoryStorageBackend storageBackend = new InMemoryStorageBackend();
+        entries = new ArrayList<>(FILES);
+        for (int i = 0; i < FILES; i++) {
+            String objectName = "user-benchmark-files/folder/file-" + i + ".bin";
+            storageBackend.put(objectName, new ByteArrayInputStream(content), content.length, null);
+            entries.add(new DirectoryArchiveService.ArchiveEntry("file-" + i + ".bin", objectName, null));
+        }
+
+        executor = Executors.newFixedThreadPool(8);
+        directoryArchiveService = new DirectoryArchiveService(new CompressionService(storageBackend, new SimpleMeterRegistry()), null, null, executor);
+        setField("readAheadObjects", 8);
+        setField("readAheadBytes", 1024 * 1024);
+        setField("compressionLevel", compressionLevel);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long writeZip() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        directoryArchiveService.writeZip(entries.iterator(), outputStream);
+        return outputStream.count;
+    }
+
+    // Значения @Value, которые в приложении задаёт Spring
+    private void setField(String name, int value) throws ReflectiveOperationException {
+        Field field = DirectoryArchiveService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.setInt(directoryArchiveService, value);
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package ru.anikson.cloudfilestorage.config;
 
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -12,8 +16,11 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import ru.anikson.cloudfilestorage.service.user.security.BoundedPasswordEncoder;
 import ru.anikson.cloudfilestorage.service.user.security.CustomUserDetailsService;
 
+import java.time.Duration;
+
 @Configuration
 @EnableWebSecurity // Включает Spring Security
 @RequiredArgsConstructor
@@ -21,14 +28,31 @@ public class SecurityConfig {
 
     private final CustomUserDetailsService cuds;
 
+    @Value("${auth.password-hash.pool-size}")
+    private int passwordHashPoolSize;
+
+    @Value("${auth.password-hash.queue-capacity}")
+    private int passwordHashQueueCapacity;
+
+    @Value("${auth.password-hash.max-wait}")
+    private Duration passwordHashMaxWait;
+
+    @Value("${server.port}")
+    private int serverPort;
+
+    @Value("${management.server.port}")
+    private int managementPort;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http     // Настройка правил доступа
                 .csrf(csrf -> csrf.disable()) // Отключаем CSRF, так как у нас REST API
                 .authorizeHttpRequests(auth -> auth
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll() // Асинхронная запись ответа (потоковое скачивание) уже авторизована
 //                     // Разрешаем доступ
                         .requestMatchers("/api/auth/sign-up", "/api/auth/sign-in").permitAll()// Разрешаем доступ без авторизации к указанным URL
                                 .requestMatchers("/", "/index.html", "/static/**", "/assets/**", "config.js").permitAll()
+                                .requestMatchers(this::isManagementRequest).permitAll() // Проверка живости и сбор метрик — только на внутреннем порту
                                 .anyRequest().authenticated() // Все остальные запросы требуют аутентификации
                 )
                 .sessionManagement(session -> session
@@ -63,9 +87,21 @@ public class SecurityConfig {
         return http.build(); // Собираем и возвращаем объект SecurityFilterChain
     }
 
+    // Пул для BCrypt: по числу ядер, с ограниченной очередью; лишние попытки входа отклоняются
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(); // Настраиваем шифрование паролей с использованием BCrypt
+    public ThreadPoolTaskExecutor passwordHashExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(passwordHashPoolSize);
+        executor.setMaxPoolSize(passwordHashPoolSize);
+        executor.setQueueCapacity(passwordHashQueueCapacity);
+        executor.setThreadNamePrefix("bcrypt-");
+        return executor;
+    }
+
+    @Bean
+    public PasswordEncoder passwordEncoder(ThreadPoolTaskExecutor passwordHashExecutor) {
+        // Настраиваем шифрование паролей с использованием BCrypt
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), passwordHashExecutor, passwordHashMaxWait);
     }
      //Конфигурация аутентификации Spring Security
     //AuthenticationConfiguration автоматически подтягивает нужные настройки аутентификации.
@@ -73,4 +109,12 @@ public class SecurityConfig {
     public AuthenticationManager authenticationManager(AuthenticationConfiguration authenticationConfiguration) throws Exception {
         return authenticationConfiguration.getAuthenticationManager();
     }
+
+    // Actuator слушает отдельный порт на внутреннем интерфейсе: метрики раскрывают трафик эндпоинтов,
+    // имена пользователей и задержки MinIO, поэтому с основного порта они недоступны.
+    // Если порт управления совпадает с основным, Actuator требует аутентификации, как и всё остальное
+    private boolean isManagementRequest(HttpServletRequest request) {
+        return managementPort != serverPort && request.getLocalPort() == managementPort
+                && request.getRequestURI().startsWith("/actuator/");
+    }
 }
@@ -0,0 +1,25 @@
+package ru.anikson.cloudfilestorage.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import ru.anikson.cloudfilestorage.service.storage.StorageBackend;
+
+// Подготовка хранилища содержимого при старте (для MinIO — создание бакета)
+@Configuration
+@RequiredArgsConstructor
+public class StorageConfig {
+
+    private final StorageBackend storageBackend;
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void initializeStorage() {
+        try {
+            storageBackend.initialize();
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Storage is not initialized", e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.anikson.cloudfilestorage.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ThumbnailConfig {
+
+    @Value("${thumbnail.pool-size}")
+    private int poolSize;
+
+    @Value("${thumbnail.queue-capacity}")
+    private int queueCapacity;
+
+    // Генерация миниатюр занимает процессор, поэтому пул небольшой и платформенный в любом режиме потоков.
+    // При переполнении очереди задача отклоняется: фоновая миниатюра будет создана позже по запросу,
+    // а запрос, который ждёт свою миниатюру, получит 503
+    @Bean
+    public AsyncTaskExecutor thumbnailTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("thumbnail-");
+        return executor;
+    }
+}
@@ -0,0 +1,31 @@
+package ru.anikson.cloudfilestorage.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import ru.anikson.cloudfilestorage.service.metadata.StorageQuotaService;
+
+import java.security.Principal;
+
+// Ранний отказ в загрузке сверх квоты: по Content-Length, до чтения тела запроса.
+// Multipart разбирается лениво (spring.servlet.multipart.resolve-lazily), поэтому тело к этому моменту ещё не принято.
+// Content-Length включает разметку multipart, точная проверка по размерам файлов выполняется в сервисе.
+@Component
+@RequiredArgsConstructor
+public class UploadQuotaInterceptor implements HandlerInterceptor {
+
+    private final StorageQuotaService storageQuotaService; // Квоты пользователей
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Principal principal = request.getUserPrincipal();
+        long contentLength = request.getContentLengthLong(); // -1 при chunked-передаче
+        if (HttpMethod.POST.matches(request.getMethod()) && principal != null && contentLength > 0) {
+            storageQuotaService.checkQuota(principal.getName(), contentLength);
+        }
+        return true;
+    }
+}
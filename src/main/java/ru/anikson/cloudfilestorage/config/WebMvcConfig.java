@@ -0,0 +1,40 @@
+package ru.anikson.cloudfilestorage.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final UploadQuotaInterceptor uploadQuotaInterceptor; // Проверка квоты до приёма тела загрузки
+
+    @Value("${web.async.concurrency-limit}")
+    private int asyncConcurrencyLimit;
+
+    // Потоки для записи потоковых ответов (StreamingResponseBody): скачивание файлов и ZIP-архивов
+    @Bean
+    public AsyncTaskExecutor mvcTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("mvc-async-");
+        executor.setConcurrencyLimit(asyncConcurrencyLimit);
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(mvcTaskExecutor());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(uploadQuotaInterceptor)
+                .addPathPatterns("/api/resource");
+    }
+}
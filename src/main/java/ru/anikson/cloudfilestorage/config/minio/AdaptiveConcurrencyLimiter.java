@@ -0,0 +1,104 @@
+package ru.anikson.cloudfilestorage.config.minio;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+// Адаптивный лимит одновременных запросов к MinIO (AIMD).
+// Успешный ответ при загруженном лимите поднимает его на единицу, таймаут или перегрузка MinIO (503, 429)
+// умножают его на backoffRatio. Запрос сверх лимита сразу отклоняется: лучше быстро отказать,
+// чем копить очередь, пока MinIO тормозит.
+// Запрос занимает место до получения заголовков ответа; чтение тела объекта лимит не держит.
+@Slf4j
+public class AdaptiveConcurrencyLimiter implements Interceptor, MeterBinder {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inFlight;
+
+    private Counter rejected;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        if (!tryAcquire()) {
+            if (rejected != null) {
+                rejected.increment();
+            }
+            throw new MinioUnavailableException("MinIO concurrency limit reached: " + getLimit());
+        }
+        boolean dropped = true;
+        try {
+            Response response = chain.proceed(chain.request());
+            dropped = response.code() == 503 || response.code() == 429;
+            return response;
+        } catch (SocketTimeoutException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            dropped = false; // Обрыв или отмена вызова не говорит о перегрузке MinIO
+            throw e;
+        } finally {
+            release(dropped);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    private synchronized void release(boolean dropped) {
+        if (dropped) {
+            int previous = (int) limit;
+            limit = Math.max(minLimit, limit * backoffRatio);
+            if ((int) limit < previous) {
+                log.debug("Лимит запросов к MinIO снижен до {}", (int) limit);
+            }
+        } else if (inFlight * 2 >= limit) {
+            // Лимит растёт, только если он действительно используется
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        inFlight--;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("minio.client.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Adaptive limit of concurrent MinIO requests")
+                .register(registry);
+        Gauge.builder("minio.client.concurrency.in-flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("MinIO requests awaiting a response")
+                .register(registry);
+        rejected = Counter.builder("minio.client.rejected")
+                .tag("reason", "concurrency-limit")
+                .description("MinIO requests rejected by the client")
+                .register(registry);
+    }
+}
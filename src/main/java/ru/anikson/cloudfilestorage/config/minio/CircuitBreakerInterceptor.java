@@ -0,0 +1,152 @@
+package ru.anikson.cloudfilestorage.config.minio;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+
+// Автомат отключения запросов к MinIO.
+// Считает исходы последних windowSize запросов; когда доля ошибок (сетевые ошибки, таймауты, ответы 5xx)
+// достигает порога, автомат размыкается и все запросы сразу отклоняются в течение openDuration.
+// Затем пропускается halfOpenCalls пробных запросов: если все успешны, автомат замыкается, иначе снова размыкается.
+@Slf4j
+public class CircuitBreakerInterceptor implements Interceptor, MeterBinder {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] window; // Кольцевой буфер исходов: true — ошибка
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    private int recorded; // Сколько исходов в окне
+    private int position;
+    private int failures;
+    private long openedAt;
+    private int trialCalls; // Пропущено пробных запросов в полуоткрытом состоянии
+    private int trialSuccesses;
+
+    private Counter rejected;
+
+    public CircuitBreakerInterceptor(int windowSize, double failureRateThreshold, Duration openDuration, int halfOpenCalls) {
+        this.window = new boolean[windowSize];
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        if (!tryAcquire()) {
+            if (rejected != null) {
+                rejected.increment();
+            }
+            throw new MinioUnavailableException("MinIO circuit breaker is open");
+        }
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (MinioUnavailableException e) {
+            release(); // До MinIO запрос не дошёл
+            throw e;
+        } catch (IOException e) {
+            record(!chain.call().isCanceled()); // Отмена вызова — не ошибка MinIO
+            throw e;
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        record(response.code() >= 500);
+        return response;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialCalls = 0;
+            trialSuccesses = 0;
+            log.info("Автомат отключения MinIO пропускает пробные запросы");
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialCalls >= halfOpenCalls) {
+                return false;
+            }
+            trialCalls++;
+        }
+        return true;
+    }
+
+    // Запрос не дошёл до MinIO: пробное место возвращается, исход не учитывается
+    private synchronized void release() {
+        if (state == State.HALF_OPEN && trialCalls > trialSuccesses) {
+            trialCalls--;
+        }
+    }
+
+    private synchronized void record(boolean failure) {
+        switch (state) {
+            case HALF_OPEN -> {
+                if (failure) {
+                    open();
+                } else if (++trialSuccesses >= halfOpenCalls) {
+                    close();
+                }
+            }
+            case CLOSED -> {
+                if (recorded == window.length) {
+                    failures -= window[position] ? 1 : 0; // Вытесняем самый старый исход
+                } else {
+                    recorded++;
+                }
+                window[position] = failure;
+                failures += failure ? 1 : 0;
+                position = (position + 1) % window.length;
+                if (recorded == window.length && failures >= failureRateThreshold * window.length) {
+                    open();
+                }
+            }
+            case OPEN -> {
+                // Ответы на запросы, начатые до размыкания, не меняют состояние
+            }
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        log.warn("Автомат отключения MinIO разомкнут на {} мс", openDurationNanos / 1_000_000);
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        position = 0;
+        failures = 0;
+        log.info("Автомат отключения MinIO замкнут");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("minio.client.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("MinIO circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+        rejected = Counter.builder("minio.client.rejected")
+                .tag("reason", "circuit-open")
+                .description("MinIO requests rejected by the client")
+                .register(registry);
+    }
+}
@@ -0,0 +1,254 @@
+package ru.anikson.cloudfilestorage.config.minio;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.ComposeObjectArgs;
+import io.minio.CopyObjectArgs;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.InsufficientDataException;
+import io.minio.errors.InternalException;
+import io.minio.errors.InvalidResponseException;
+import io.minio.errors.ServerException;
+import io.minio.errors.XmlParserException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.Item;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+// Клиент MinIO с метриками: время и исход каждой операции (minio.client.requests),
+// переданные байты (minio.client.bytes). Перцентили и гистограммы задаются в application.properties.
+// Время листинга — суммарное время внутри итератора (без обработки элементов вызывающим), пишется по окончании обхода.
+public class InstrumentedMinioClient extends MinioClient {
+
+    private static final String REQUESTS = "minio.client.requests";
+    private static final String BYTES = "minio.client.bytes";
+
+    private final MinioClient delegate; // Операции с метриками выполняются через него, остальные — напрямую
+    private final MeterRegistry meterRegistry;
+
+    public InstrumentedMinioClient(MinioClient delegate, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public StatObjectResponse statObject(StatObjectArgs args)
+            throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+            InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            StatObjectResponse response = delegate.statObject(args);
+            record(sample, "statObject", null);
+            return response;
+        } catch (Exception e) {
+            record(sample, "statObject", e);
+            throw e;
+        }
+    }
+
+    // Время до получения заголовков ответа; байты считаются по мере чтения тела
+    @Override
+    public GetObjectResponse getObject(GetObjectArgs args)
+            throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+            InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            GetObjectResponse response = delegate.getObject(args);
+            record(sample, "getObject", null);
+            return new GetObjectResponse(response.headers(), response.bucket(), response.region(), response.object(),
+                    new CountingInputStream(response, bytesCounter("getObject")));
+        } catch (Exception e) {
+            record(sample, "getObject", e);
+            throw e;
+        }
+    }
+
+    @Override
+    public ObjectWriteResponse putObject(PutObjectArgs args)
+            throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+            InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            ObjectWriteResponse response = delegate.putObject(args);
+            record(sample, "putObject", null);
+            if (args.objectSize() > 0) {
+                bytesCounter("putObject").increment(args.objectSize());
+            }
+            return response;
+        } catch (Exception e) {
+            record(sample, "putObject", e);
+            throw e;
+        }
+    }
+
+    @Override
+    public ObjectWriteResponse copyObject(CopyObjectArgs args)
+            throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+            InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            ObjectWriteResponse response = delegate.copyObject(args);
+            record(sample, "copyObject", null);
+            return response;
+        } catch (Exception e) {
+            record(sample, "copyObject", e);
+            throw e;
+        }
+    }
+
+    @Override
+    public ObjectWriteResponse composeObject(ComposeObjectArgs args)
+            throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+            InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            ObjectWriteResponse response = delegate.composeObject(args);
+            record(sample, "composeObject", null);
+            return response;
+        } catch (Exception e) {
+            record(sample, "composeObject", e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void removeObject(RemoveObjectArgs args)
+            throws ErrorResponseException, InsufficientDataException, InternalException, InvalidKeyException,
+            InvalidResponseException, IOException, NoSuchAlgorithmException, ServerException, XmlParserException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            delegate.removeObject(args);
+            record(sample, "removeObject", null);
+        } catch (Exception e) {
+            record(sample, "removeObject", e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Iterable<Result<Item>> listObjects(ListObjectsArgs args) {
+        Iterable<Result<Item>> results = delegate.listObjects(args);
+        return () -> new TimedIterator<>(results.iterator(), "listObjects");
+    }
+
+    @Override
+    public Iterable<Result<DeleteError>> removeObjects(RemoveObjectsArgs args) {
+        Iterable<Result<DeleteError>> results = delegate.removeObjects(args);
+        return () -> new TimedIterator<>(results.iterator(), "removeObjects");
+    }
+
+    private void record(Timer.Sample sample, String operation, Exception e) {
+        sample.stop(timer(operation, e));
+    }
+
+    private Timer timer(String operation, Exception e) {
+        return Timer.builder(REQUESTS)
+                .description("MinIO client operations")
+                .tag("operation", operation)
+                .tag("outcome", e == null ? "SUCCESS" : "ERROR")
+                .tag("exception", e == null ? "none" : e.getClass().getSimpleName())
+                .register(meterRegistry);
+    }
+
+    private Counter bytesCounter(String operation) {
+        return Counter.builder(BYTES)
+                .description("Bytes transferred to and from MinIO")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    // Итератор ленивого ответа MinIO: запросы страниц выполняются внутри hasNext()/next().
+    // Ошибка приходит элементом Result, после первой ошибки обход заканчивается.
+    private class TimedIterator<T> implements Iterator<Result<T>> {
+
+        private final Iterator<Result<T>> results;
+        private final String operation;
+        private long elapsedNanos;
+        private boolean recorded;
+
+        private TimedIterator(Iterator<Result<T>> results, String operation) {
+            this.results = results;
+            this.operation = operation;
+        }
+
+        @Override
+        public boolean hasNext() {
+            long start = System.nanoTime();
+            boolean hasNext = results.hasNext();
+            elapsedNanos += System.nanoTime() - start;
+            if (!hasNext) {
+                finish(null);
+            }
+            return hasNext;
+        }
+
+        @Override
+        public Result<T> next() {
+            long start = System.nanoTime();
+            Result<T> result = results.next();
+            elapsedNanos += System.nanoTime() - start;
+            try {
+                result.get();
+            } catch (Exception e) {
+                finish(e);
+            }
+            return result;
+        }
+
+        private void finish(Exception e) {
+            if (recorded) {
+                return;
+            }
+            recorded = true;
+            timer(operation, e).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final Counter counter;
+
+        private CountingInputStream(InputStream in, Counter counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                counter.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                counter.increment(n);
+            }
+            return n;
+        }
+    }
+}
@@ -1,10 +1,21 @@
 package ru.anikson.cloudfilestorage.config.minio;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class MinioConfig {
 
@@ -17,11 +28,105 @@ public class MinioConfig {
     @Value("${minio.secret-key}")
     private String secretKey;
 
+    @Value("${minio.http.max-idle-connections}")
+    private int maxIdleConnections;
+
+    @Value("${minio.http.keep-alive}")
+    private Duration keepAlive;
+
+    @Value("${minio.http.max-requests}")
+    private int maxRequests;
+
+    @Value("${minio.http.connect-timeout}")
+    private Duration connectTimeout;
+
+    @Value("${minio.http.metadata-timeout}")
+    private Duration metadataTimeout;
+
+    @Value("${minio.http.transfer-timeout}")
+    private Duration transferTimeout;
+
+    @Value("${minio.http.retry.max-attempts}")
+    private int retryMaxAttempts;
+
+    @Value("${minio.http.retry.base-delay}")
+    private Duration retryBaseDelay;
+
+    @Value("${minio.http.retry.max-delay}")
+    private Duration retryMaxDelay;
+
+    @Value("${minio.http.limiter.initial-limit}")
+    private int limiterInitialLimit;
+
+    @Value("${minio.http.limiter.min-limit}")
+    private int limiterMinLimit;
+
+    @Value("${minio.http.limiter.max-limit}")
+    private int limiterMaxLimit;
+
+    @Value("${minio.http.limiter.backoff-ratio}")
+    private double limiterBackoffRatio;
+
+    @Value("${minio.http.circuit-breaker.window-size}")
+    private int breakerWindowSize;
+
+    @Value("${minio.http.circuit-breaker.failure-rate-threshold}")
+    private double breakerFailureRateThreshold;
+
+    @Value("${minio.http.circuit-breaker.open-duration}")
+    private Duration breakerOpenDuration;
+
+    @Value("${minio.http.circuit-breaker.half-open-calls}")
+    private int breakerHalfOpenCalls;
+
+    // Общий HTTP-клиент обоих клиентов MinIO.
+    // SDK выполняет все вызовы через асинхронный диспетчер OkHttp, а он по умолчанию пускает к одному хосту
+    // только 5 запросов — поэтому диспетчер настраивается явно, а решение об отказе принимает адаптивный лимит.
+    // Порядок перехватчиков: повтор -> автомат отключения -> лимит -> таймауты, каждая попытка проходит лимит заново.
     @Bean
-    public MinioClient minioClient() {
-        return MinioClient.builder()
+    public OkHttpClient minioHttpClient(MeterRegistry meterRegistry) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests);
+
+        CircuitBreakerInterceptor circuitBreaker = new CircuitBreakerInterceptor(
+                breakerWindowSize, breakerFailureRateThreshold, breakerOpenDuration, breakerHalfOpenCalls);
+        circuitBreaker.bindTo(meterRegistry);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                limiterInitialLimit, limiterMinLimit, limiterMaxLimit, limiterBackoffRatio);
+        limiter.bindTo(meterRegistry);
+
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeout)
+                .readTimeout(transferTimeout)
+                .writeTimeout(transferTimeout)
+                .protocols(List.of(Protocol.HTTP_1_1)) // Как и в SDK по умолчанию
+                .addInterceptor(new RetryInterceptor(retryMaxAttempts, retryBaseDelay, retryMaxDelay))
+                .addInterceptor(circuitBreaker)
+                .addInterceptor(limiter)
+                .addInterceptor(new OperationTimeoutInterceptor(metadataTimeout, transferTimeout))
+                .build();
+    }
+
+    // Все операции клиента пишут метрики (время, ошибки, переданные байты)
+    @Bean
+    public MinioClient minioClient(MeterRegistry meterRegistry, @Qualifier("minioHttpClient") OkHttpClient httpClient) {
+        return new InstrumentedMinioClient(MinioClient.builder()
                 .endpoint(minioUrl)
                 .credentials(accessKey, secretKey)
-                .build();
+                .httpClient(httpClient)
+                .build(), meterRegistry);
+    }
+
+    // Клиент для загрузки больших файлов частями (S3 multipart)
+    @Bean
+    public MultipartMinioClient multipartMinioClient(@Qualifier("minioHttpClient") OkHttpClient httpClient) {
+        return new MultipartMinioClient(MinioAsyncClient.builder()
+                .endpoint(minioUrl)
+                .credentials(accessKey, secretKey)
+                .httpClient(httpClient)
+                .build());
     }
 }
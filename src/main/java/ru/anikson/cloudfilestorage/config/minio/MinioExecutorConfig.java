@@ -0,0 +1,54 @@
+package ru.anikson.cloudfilestorage.config.minio;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+// Общий исполнитель для параллельных обращений к MinIO (предзагрузка, массовые операции).
+// Режим выбирается spring.threads.virtual.enabled: пул платформенных потоков или виртуальный поток на задачу.
+// В обоих режимах число одновременных задач на узел ограничено; задачи исполнителя не должны ждать другие его задачи.
+@Configuration
+public class MinioExecutorConfig {
+
+    @Value("${minio.executor.pool-size}")
+    private int poolSize;
+
+    @Value("${minio.executor.queue-capacity}")
+    private int queueCapacity;
+
+    @Value("${minio.executor.virtual-concurrency-limit}")
+    private int virtualConcurrencyLimit;
+
+    // Размер пула ограничивает нагрузку на MinIO со всего узла
+    @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public AsyncTaskExecutor minioTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("minio-io-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy()); // При переполнении очереди работу выполняет вызывающий поток
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    // Виртуальные потоки не держат платформенный поток во время ожидания MinIO, поэтому лимит можно держать
+    // выше размера пула; при достижении лимита отправляющий поток ждёт свободного места
+    @Bean("minioTaskExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public AsyncTaskExecutor virtualMinioTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("minio-io-");
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(virtualConcurrencyLimit);
+        executor.setTaskTerminationTimeout(30_000); // Как и пул, дожидается задач при остановке
+        return executor;
+    }
+}
@@ -0,0 +1,11 @@
+package ru.anikson.cloudfilestorage.config.minio;
+
+import java.io.IOException;
+
+// Запрос к MinIO отклонён на стороне клиента (лимит одновременных запросов или разомкнутый автомат отключения).
+// До MinIO такой запрос не доходил, поэтому он не повторяется и не считается ошибкой MinIO.
+public class MinioUnavailableException extends IOException {
+    public MinioUnavailableException(String message) {
+        super(message);
+    }
+}
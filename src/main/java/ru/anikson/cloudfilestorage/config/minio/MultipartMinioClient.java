@@ -0,0 +1,104 @@
+package ru.anikson.cloudfilestorage.config.minio;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.S3Escaper;
+import io.minio.errors.MinioException;
+import io.minio.messages.ListPartsResult;
+import io.minio.messages.Part;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+// Клиент MinIO с доступом к низкоуровневым операциям multipart-загрузки.
+// В SDK эти операции protected, поэтому открываем их через наследника.
+// Синхронные варианты в S3Base помечены устаревшими, поэтому вызываются *Async с ожиданием результата —
+// так же делает синхронный MinioClient; исходная ошибка SDK извлекается из обёрток CompletableFuture.
+public class MultipartMinioClient extends MinioAsyncClient {
+
+    private static final int LIST_PARTS_PAGE_SIZE = 1000;
+
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    public String createUpload(String bucketName, String objectName) throws MinioException, IOException, GeneralSecurityException {
+        return await(createMultipartUploadAsync(bucketName, null, objectName, null, null)).result().uploadId();
+    }
+
+    // Загрузка одной части, возвращает её ETag
+    public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber,
+                             InputStream data, long length) throws MinioException, IOException, GeneralSecurityException {
+        return await(uploadPartAsync(bucketName, null, objectName, data, length, uploadId, partNumber, null, null)).etag();
+    }
+
+    // Часть, скопированная из диапазона существующего объекта на стороне хранилища (UploadPartCopy), возвращает её ETag
+    public String uploadPartCopy(String bucketName, String objectName, String uploadId, int partNumber,
+                                 String sourceObject, long offset, long length)
+            throws MinioException, IOException, GeneralSecurityException {
+        Multimap<String, String> headers = HashMultimap.create();
+        headers.put("x-amz-copy-source", S3Escaper.encodePath("/" + bucketName + "/" + sourceObject));
+        headers.put("x-amz-copy-source-range", "bytes=" + offset + "-" + (offset + length - 1));
+        return await(uploadPartCopyAsync(bucketName, null, objectName, uploadId, partNumber, headers, null)).result().etag();
+    }
+
+    public ObjectWriteResponse completeUpload(String bucketName, String objectName, String uploadId, Part[] parts)
+            throws MinioException, IOException, GeneralSecurityException {
+        return await(completeMultipartUploadAsync(bucketName, null, objectName, uploadId, parts, null, null));
+    }
+
+    public void abortUpload(String bucketName, String objectName, String uploadId) throws MinioException, IOException, GeneralSecurityException {
+        await(abortMultipartUploadAsync(bucketName, null, objectName, uploadId, null, null));
+    }
+
+    // Все уже загруженные части (постранично, по 1000 штук)
+    public List<Part> listUploadedParts(String bucketName, String objectName, String uploadId)
+            throws MinioException, IOException, GeneralSecurityException {
+        List<Part> parts = new ArrayList<>();
+        Integer marker = null;
+        ListPartsResult result;
+        do {
+            result = await(listPartsAsync(bucketName, null, objectName, LIST_PARTS_PAGE_SIZE, marker, uploadId, null, null)).result();
+            parts.addAll(result.partList());
+            marker = result.nextPartNumberMarker();
+        } while (result.isTruncated());
+        return parts;
+    }
+
+    // Ожидание ответа с исходным типом ошибки: вызывающие различают ErrorResponseException, IOException и т.д.
+    private static <T> T await(CompletableFuture<T> future) throws MinioException, IOException, GeneralSecurityException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for MinIO");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof MinioException minioException) {
+                throw minioException;
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof GeneralSecurityException securityException) {
+                throw securityException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
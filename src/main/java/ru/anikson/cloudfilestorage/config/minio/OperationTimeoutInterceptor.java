@@ -0,0 +1,43 @@
+package ru.anikson.cloudfilestorage.config.minio;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Таймауты чтения и записи по типу операции.
+// Служебные запросы (stat, листинг, удаление, создание multipart-сессии) MinIO отвечает быстро — для них таймаут короткий.
+// Передача данных (скачивание и загрузка объектов и частей, сборка multipart) получает длинный таймаут бездействия сокета.
+public class OperationTimeoutInterceptor implements Interceptor {
+
+    private final int metadataTimeoutMillis;
+    private final int transferTimeoutMillis;
+
+    public OperationTimeoutInterceptor(Duration metadataTimeout, Duration transferTimeout) {
+        this.metadataTimeoutMillis = (int) metadataTimeout.toMillis();
+        this.transferTimeoutMillis = (int) transferTimeout.toMillis();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        int timeout = isTransfer(chain.request()) ? transferTimeoutMillis : metadataTimeoutMillis;
+        return chain
+                .withReadTimeout(timeout, TimeUnit.MILLISECONDS)
+                .withWriteTimeout(timeout, TimeUnit.MILLISECONDS)
+                .proceed(chain.request());
+    }
+
+    private static boolean isTransfer(Request request) {
+        HttpUrl url = request.url();
+        return switch (request.method()) {
+            case "PUT" -> true; // Загрузка объекта или части, серверное копирование
+            case "GET" -> url.querySize() == 0 || url.queryParameter("versionId") != null; // Объект, а не листинг
+            case "POST" -> url.queryParameter("uploadId") != null; // Сборка multipart-загрузки
+            default -> false;
+        };
+    }
+}
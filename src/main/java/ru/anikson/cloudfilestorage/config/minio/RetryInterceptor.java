@@ -0,0 +1,70 @@
+package ru.anikson.cloudfilestorage.config.minio;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Повтор идемпотентных запросов к MinIO (GET, HEAD, DELETE) при сетевых ошибках, таймаутах и ответах 500/502/503/504.
+// Задержка перед повтором — экспоненциальная с полным джиттером: случайная в [0, min(maxDelay, baseDelay * 2^attempt)],
+// чтобы повторы многих клиентов не приходили в MinIO одной волной.
+// PUT и POST не повторяются: тело запроса SDK может быть одноразовым потоком, а POST в S3 неидемпотентен.
+@Slf4j
+public class RetryInterceptor implements Interceptor {
+
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "DELETE");
+    private static final Set<Integer> RETRYABLE_CODES = Set.of(500, 502, 503, 504);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryInterceptor(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelay.toMillis();
+        this.maxDelayMillis = maxDelay.toMillis();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!IDEMPOTENT_METHODS.contains(request.method())) {
+            return chain.proceed(request);
+        }
+        for (int attempt = 1; ; attempt++) {
+            boolean lastAttempt = attempt >= maxAttempts;
+            try {
+                Response response = chain.proceed(request);
+                if (lastAttempt || !RETRYABLE_CODES.contains(response.code())) {
+                    return response;
+                }
+                log.debug("MinIO ответил {} на {} {}, повтор {}", response.code(), request.method(), request.url().encodedPath(), attempt);
+                response.close();
+            } catch (MinioUnavailableException e) {
+                throw e; // Отклонён лимитом или автоматом отключения — повтор только добавит нагрузки
+            } catch (IOException e) {
+                if (lastAttempt || chain.call().isCanceled()) {
+                    throw e;
+                }
+                log.debug("Ошибка запроса {} {}: {}, повтор {}", request.method(), request.url().encodedPath(), e.getMessage(), attempt);
+            }
+            backoff(attempt);
+        }
+    }
+
+    private void backoff(int attempt) throws InterruptedIOException {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry a MinIO request");
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.anikson.cloudfilestorage.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import ru.anikson.cloudfilestorage.dto.user.UsageRebuildResponse;
+import ru.anikson.cloudfilestorage.service.metadata.StorageQuotaService;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminController {
+
+    private final StorageQuotaService storageQuotaService;
+
+    // Пересчёт занятого места всеми пользователями; выполняется в фоне
+    @PostMapping("/storage-usage/rebuild")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public UsageRebuildResponse rebuildStorageUsage(@AuthenticationPrincipal UserDetails userDetails) {
+        log.info("POST api/admin/storage-usage/rebuild");
+        return storageQuotaService.rebuildUsage(userDetails.getUsername());
+    }
+}
@@ -1,6 +1,7 @@
 package ru.anikson.cloudfilestorage.controller;
 
 import jakarta.servlet.http.HttpServletRequest;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -9,6 +10,7 @@ import ru.anikson.cloudfilestorage.dto.user.UserResponse;
 import ru.anikson.cloudfilestorage.entity.User;
 import ru.anikson.cloudfilestorage.service.user.AuthService;
 
+@Timed("api.requests")
 @RestController
 @RequestMapping("/api/auth")
 @Slf4j
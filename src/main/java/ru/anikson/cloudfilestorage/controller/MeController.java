@@ -1,19 +1,25 @@
 package ru.anikson.cloudfilestorage.controller;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import ru.anikson.cloudfilestorage.dto.user.StorageUsageResponse;
 import ru.anikson.cloudfilestorage.dto.user.UserResponse;
 import ru.anikson.cloudfilestorage.exception.NotFoundException;
+import ru.anikson.cloudfilestorage.service.metadata.StorageQuotaService;
 
 @RestController
 @RequestMapping("/api/users/me")
+@RequiredArgsConstructor
 @Slf4j
 public class MeController {
 
+    private final StorageQuotaService storageQuotaService;
+
     @GetMapping
     public UserResponse getMySelfAgain(@AuthenticationPrincipal UserDetails ud) {
         log.info("GET api/users/me");
@@ -23,4 +29,9 @@ public class MeController {
         }
         return new UserResponse(ud.getUsername());
     }
+
+    @GetMapping("/storage")
+    public StorageUsageResponse getStorageUsage(@AuthenticationPrincipal UserDetails ud) {
+        return storageQuotaService.getUsage(ud.getUsername());
+    }
 }
@@ -0,0 +1,53 @@
+package ru.anikson.cloudfilestorage.controller.minio;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import ru.anikson.cloudfilestorage.dto.resource.DeltaInstruction;
+import ru.anikson.cloudfilestorage.dto.resource.FileSignature;
+import ru.anikson.cloudfilestorage.entity.ResourceInfo;
+import ru.anikson.cloudfilestorage.service.minio.DeltaSyncService;
+
+import java.util.List;
+
+// Протокол дельта-обновления файла (как в rsync):
+// GET /api/resource/delta/signature?path=... -> клиент ищет у себя блоки с теми же суммами скользящим окном
+// -> PUT /api/resource/delta?path=...&baseEtag=... (multipart: instructions — JSON-список COPY/DATA,
+// data — новые байты подряд в порядке DATA-инструкций). Если файл изменился после сигнатуры — 412.
+@Timed("api.requests")
+@RestController
+@RequestMapping("/api/resource/delta")
+@RequiredArgsConstructor
+@Slf4j
+public class DeltaSyncController {
+
+    private final DeltaSyncService deltaSyncService;
+
+    @GetMapping("/signature")
+    @ResponseStatus(HttpStatus.OK)
+    public FileSignature getSignature(
+            @RequestParam String path,
+            @RequestParam(required = false) Integer blockSize,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        String username = userDetails.getUsername();
+        return deltaSyncService.getSignature(username, path, blockSize);
+    }
+
+    @PutMapping
+    @ResponseStatus(HttpStatus.OK)
+    public ResourceInfo applyDelta(
+            @RequestParam String path,
+            @RequestParam String baseEtag,
+            @RequestPart("instructions") List<DeltaInstruction> instructions,
+            @RequestPart(name = "data", required = false) MultipartFile data,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        String username = userDetails.getUsername();
+        log.info("User {} updates {} with {} delta instructions", username, path, instructions.size());
+        return deltaSyncService.applyDelta(username, path, baseEtag, instructions, data);
+    }
+}
@@ -1,28 +1,71 @@
 package ru.anikson.cloudfilestorage.controller.minio;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.anikson.cloudfilestorage.dto.resource.DirectoryPage;
+import ru.anikson.cloudfilestorage.dto.resource.DirectorySort;
 import ru.anikson.cloudfilestorage.entity.ResourceInfo;
+import ru.anikson.cloudfilestorage.service.metadata.EtagService;
 import ru.anikson.cloudfilestorage.service.minio.DirectoryService;
 
 import java.util.List;
 
+@Timed("api.requests")
 @RestController
 @RequestMapping("/api/directory")
 @RequiredArgsConstructor
 public class DirectoryController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final DirectoryService directoryService;
+    private final EtagService etagService;
 
+    // Без limit возвращается всё содержимое; с limit — страница, курсор следующей в заголовке X-Next-Cursor.
+    // ETag — хеш страницы вместе с курсором: неизменная папка на If-None-Match получает 304 без тела
     @GetMapping
-    public List<ResourceInfo> getDirectoryContent(
+    public ResponseEntity<List<ResourceInfo>> getDirectoryContent(
             @RequestParam String path,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "NAME") DirectorySort sort,
+            @RequestParam(defaultValue = "ASC") Sort.Direction direction,
             @AuthenticationPrincipal UserDetails userDetails) {
         String userName =userDetails.getUsername();
-        return directoryService.getDirectoryContent(userName, path);
+        DirectoryPage page = directoryService.getDirectoryPage(userName, path, sort, direction, limit, cursor);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etagService.weakEtag(page))
+                .cacheControl(CacheControl.noCache().cachePrivate());
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
+    }
+
+    // Потоковый листинг в NDJSON: одна запись на строку, первые записи приходят сразу
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamDirectoryContent(
+            @RequestParam String path,
+            @RequestParam(defaultValue = "NAME") DirectorySort sort,
+            @RequestParam(defaultValue = "ASC") Sort.Direction direction,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        String userName =userDetails.getUsername();
+        directoryService.prepareDirectoryStream(userName, path);
+
+        StreamingResponseBody body = outputStream ->
+                directoryService.writeDirectoryContent(userName, path, sort, direction, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @PostMapping
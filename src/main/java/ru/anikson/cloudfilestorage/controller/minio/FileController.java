@@ -1,51 +1,198 @@
 package ru.anikson.cloudfilestorage.controller.minio;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.anikson.cloudfilestorage.dto.resource.DeleteResult;
+import ru.anikson.cloudfilestorage.dto.resource.DirectoryDownload;
+import ru.anikson.cloudfilestorage.dto.resource.DownloadRequest;
+import ru.anikson.cloudfilestorage.dto.resource.FileUploadResult;
+import ru.anikson.cloudfilestorage.dto.resource.ResourceDownload;
+import ru.anikson.cloudfilestorage.dto.resource.ResourceSearchQuery;
+import ru.anikson.cloudfilestorage.dto.resource.SearchMode;
+import ru.anikson.cloudfilestorage.dto.resource.ThumbnailDownload;
 import ru.anikson.cloudfilestorage.entity.ResourceInfo;
 import ru.anikson.cloudfilestorage.service.minio.FileService;
+import ru.anikson.cloudfilestorage.service.metadata.EtagService;
+import ru.anikson.cloudfilestorage.service.minio.ThumbnailService;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
 
+@Timed("api.requests")
 @RestController
 @RequestMapping("/api/resource")
 @RequiredArgsConstructor
 @Slf4j
 public class FileController {
 
+    // Атрибуты запроса, по которым Tomcat отдаёт файл через sendfile после выхода из контроллера
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private final FileService resourceService;
+    private final ThumbnailService thumbnailService;
+    private final EtagService etagService;
+
+    @Value("${thumbnail.cache-max-age}")
+    private Duration thumbnailCacheMaxAge;
 
+    // ETag — хеш сведений о ресурсе: на совпавший If-None-Match Spring сам отвечает 304
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public ResourceInfo getResourceInfo(
+    public ResponseEntity<ResourceInfo> getResourceInfo(
             @RequestParam String path,
             @AuthenticationPrincipal UserDetails userDetails) {
         String username = userDetails.getUsername();
-        return resourceService.getResourceInfo(username, path);
+        ResourceInfo info = resourceService.getResourceInfo(username, path);
+        return ResponseEntity.ok()
+                .eTag(etagService.weakEtag(info))
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(info);
     }
 
     @DeleteMapping
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteResource(
+    @ResponseStatus(HttpStatus.OK)
+    public DeleteResult deleteResource(
             @RequestParam String path,
             @AuthenticationPrincipal UserDetails userDetails) {
         String username = userDetails.getUsername();
-        resourceService.deleteResource(username, path);
+        return resourceService.deleteResource(username, path);
     }
 
     @GetMapping("/download")
-    @ResponseStatus(HttpStatus.OK)
-    public ByteArrayResource downloadResource(
+    public ResponseEntity<StreamingResponseBody> downloadResource(
             @RequestParam String path,
+            @RequestHeader HttpHeaders headers,
+            HttpServletRequest request,
             @AuthenticationPrincipal UserDetails userDetails) {
         String username = userDetails.getUsername();
-        return resourceService.downloadResource(username, path);
+        if (path.endsWith("/")) {
+            return downloadDirectory(username, path);
+        }
+
+        ResourceDownload download = resourceService.downloadResource(username, path, new DownloadRequest(
+                parseRanges(headers), headers.getFirst(HttpHeaders.IF_RANGE), headers.getIfNoneMatch(),
+                headers.getIfModifiedSince(), acceptsGzip(headers)));
+
+        // Клиент кэширует файл, но перед использованием перепроверяет версию по ETag/Last-Modified
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.setCacheControl(CacheControl.noCache().cachePrivate());
+        if (download.notModified()) {
+            responseHeaders.setETag(download.etag());
+            if (download.lastModified() != null) {
+                responseHeaders.setLastModified(download.lastModified());
+            }
+            if (download.varyByEncoding()) {
+                responseHeaders.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+            }
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(responseHeaders).build();
+        }
+
+        // Слот передачи уже занят: если ответ собрать не удалось, поток не откроется и слот нужно вернуть
+        try {
+            return fileResponse(download, responseHeaders, request);
+        } catch (RuntimeException e) {
+            download.release().run();
+            throw e;
+        }
+    }
+
+    // Заголовки и тело ответа со скачиваемым файлом (или передача файла Tomcat для sendfile)
+    private ResponseEntity<StreamingResponseBody> fileResponse(ResourceDownload download, HttpHeaders responseHeaders,
+                                                               HttpServletRequest request) {
+        responseHeaders.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        responseHeaders.setContentType(MediaType.parseMediaType(download.contentType()));
+        responseHeaders.setContentLength(download.length());
+        responseHeaders.setContentDisposition(ContentDisposition.attachment()
+                .filename(download.fileName(), StandardCharsets.UTF_8)
+                .build());
+        responseHeaders.setETag(download.etag());
+        if (download.contentEncoding() != null) {
+            responseHeaders.set(HttpHeaders.CONTENT_ENCODING, download.contentEncoding());
+        }
+        if (download.varyByEncoding()) {
+            responseHeaders.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        }
+        if (download.lastModified() != null) {
+            responseHeaders.setLastModified(download.lastModified());
+        }
+        if (download.partial()) {
+            responseHeaders.set(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + download.offset() + "-" + download.end() + "/" + download.totalSize());
+        }
+
+        HttpStatus status = download.partial() ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK;
+        // Файл с локального диска Tomcat отдаёт сам через sendfile: байты идут из кэша страниц в сокет без копирования
+        if (download.localFile() != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, download.localFile().toString());
+            request.setAttribute(SENDFILE_START, download.offset());
+            request.setAttribute(SENDFILE_END, download.offset() + download.length());
+            download.release().run(); // Поток не откроется: скорость sendfile не ограничена, слот держать не нужно
+            return ResponseEntity.status(status).headers(responseHeaders).build();
+        }
+
+        // Тело пишется напрямую из ответа хранилища в выходной поток сервлета
+        StreamingResponseBody body = outputStream -> {
+            try (InputStream stream = download.content().getInputStream()) {
+                stream.transferTo(outputStream);
+            }
+        };
+        return ResponseEntity.status(status)
+                .headers(responseHeaders)
+                .body(body);
+    }
+
+    // Миниатюра изображения (JPEG). С параметром v, равным текущей версии (ETag без кавычек),
+    // ответ кэшируется надолго как неизменяемый; без него клиент перепроверяет версию по If-None-Match
+    @GetMapping("/thumbnail")
+    public ResponseEntity<StreamingResponseBody> getThumbnail(
+            @RequestParam String path,
+            @RequestParam(name = "v", required = false) String version,
+            @RequestHeader HttpHeaders headers,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        String username = userDetails.getUsername();
+        ThumbnailDownload thumbnail = thumbnailService.getThumbnail(username, path);
+
+        CacheControl cacheControl = thumbnail.etag().equals("\"" + version + "\"")
+                ? CacheControl.maxAge(thumbnailCacheMaxAge).cachePrivate().immutable()
+                : CacheControl.noCache().cachePrivate();
+        if (headers.getIfNoneMatch().contains(thumbnail.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(thumbnail.etag())
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try (InputStream stream = thumbnail.content().getInputStream()) {
+                stream.transferTo(outputStream);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .contentLength(thumbnail.length())
+                .eTag(thumbnail.etag())
+                .cacheControl(cacheControl)
+                .body(body);
     }
 
     @GetMapping("/move")
@@ -62,19 +209,87 @@ public class FileController {
     @ResponseStatus(HttpStatus.OK)
     public List<ResourceInfo> searchResources(
             @RequestParam String query,
+            @RequestParam(defaultValue = "SUBSTRING") SearchMode mode,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) Long minSize,
+            @RequestParam(required = false) Long maxSize,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "0") int size,
             @AuthenticationPrincipal UserDetails userDetails) {
         String username = userDetails.getUsername();
-        return resourceService.searchResources(username, query);
+        return resourceService.searchResources(username,
+                new ResourceSearchQuery(query, mode, type, minSize, maxSize, page, size));
     }
 
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    public List<ResourceInfo> uploadResource(
+    public ResponseEntity<List<FileUploadResult>> uploadResource(
             @RequestParam String path,
             @RequestParam("object") MultipartFile[] files,
             @AuthenticationPrincipal UserDetails userDetails) {
         String username = userDetails.getUsername();
-        log.info("User {} upload file {}", username, files);
-        return resourceService.uploadResources(username, path, files);
+        log.info("User {} upload {} files", username, files.length);
+        List<FileUploadResult> results = resourceService.uploadResources(username, path, files);
+        // 207, если часть файлов не загрузилась: клиенту достаточно повторить только их
+        boolean allUploaded = results.stream().allMatch(FileUploadResult::succeeded);
+        return ResponseEntity.status(allUploaded ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS)
+                .body(results);
+    }
+
+    // Папка отдаётся ZIP-архивом, который формируется на лету
+    private ResponseEntity<StreamingResponseBody> downloadDirectory(String username, String path) {
+        DirectoryDownload download = resourceService.prepareDirectoryDownload(username, path);
+        StreamingResponseBody body = download.archive()::writeTo;
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(download.archiveName(), StandardCharsets.UTF_8)
+                            .build()
+                            .toString())
+                    .body(body);
+        } catch (RuntimeException e) {
+            download.release().run(); // Архив не будет записан — слот передачи возвращается сразу
+            throw e;
+        }
+    }
+
+    // Некорректный заголовок Range по RFC 9110 игнорируется, объект отдаётся целиком
+    private List<HttpRange> parseRanges(HttpHeaders headers) {
+        try {
+            return headers.getRange();
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring malformed Range header: {}", headers.getFirst(HttpHeaders.RANGE));
+            return List.of();
+        }
+    }
+
+    // Принимает ли клиент gzip: по Accept-Encoding с учётом q=0 (явный отказ) и "*"
+    private static boolean acceptsGzip(HttpHeaders headers) {
+        boolean accepted = false;
+        for (String value : headers.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.trim().split(";");
+                String name = parts[0].trim().toLowerCase(Locale.ROOT);
+                if (!name.equals("gzip") && !name.equals("x-gzip") && !name.equals("*")) {
+                    continue;
+                }
+                boolean allowed = true;
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            allowed = Double.parseDouble(parameter.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            allowed = false;
+                        }
+                    }
+                }
+                if (!name.equals("*")) {
+                    return allowed; // Явно названный gzip важнее "*"
+                }
+                accepted = allowed;
+            }
+        }
+        return accepted;
     }
 }
\ No newline at end of file
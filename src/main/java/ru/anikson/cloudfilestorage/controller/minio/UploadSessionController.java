@@ -0,0 +1,78 @@
+package ru.anikson.cloudfilestorage.controller.minio;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+import ru.anikson.cloudfilestorage.dto.resource.UploadSessionResponse;
+import ru.anikson.cloudfilestorage.entity.ResourceInfo;
+import ru.anikson.cloudfilestorage.service.minio.ChunkedUploadService;
+
+import java.io.IOException;
+
+// Протокол возобновляемой загрузки:
+// POST /api/resource/uploads -> PUT /{sessionId}/chunks/{index} (в любом порядке, параллельно)
+// -> GET /{sessionId} для проверки принятых частей -> POST /{sessionId}/complete или DELETE /{sessionId}
+@RestController
+@RequestMapping("/api/resource/uploads")
+@RequiredArgsConstructor
+@Slf4j
+public class UploadSessionController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public UploadSessionResponse createSession(
+            @RequestParam String path,
+            @RequestParam String name,
+            @RequestParam long size,
+            @RequestParam(required = false) Long chunkSize,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        String username = userDetails.getUsername();
+        log.info("User {} starts chunked upload of {}{} ({} bytes)", username, path, name, size);
+        return chunkedUploadService.createSession(username, path, name, size, chunkSize);
+    }
+
+    @GetMapping("/{sessionId}")
+    @ResponseStatus(HttpStatus.OK)
+    public UploadSessionResponse getStatus(
+            @PathVariable String sessionId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        String username = userDetails.getUsername();
+        return chunkedUploadService.getStatus(username, sessionId);
+    }
+
+    // Тело запроса — сырые байты части (application/octet-stream), Content-Length обязателен
+    @PutMapping("/{sessionId}/chunks/{index}")
+    @ResponseStatus(HttpStatus.OK)
+    public UploadSessionResponse uploadChunk(
+            @PathVariable String sessionId,
+            @PathVariable int index,
+            HttpServletRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) throws IOException {
+        String username = userDetails.getUsername();
+        return chunkedUploadService.uploadChunk(username, sessionId, index, request.getInputStream(), request.getContentLengthLong());
+    }
+
+    @PostMapping("/{sessionId}/complete")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ResourceInfo complete(
+            @PathVariable String sessionId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        String username = userDetails.getUsername();
+        return chunkedUploadService.complete(username, sessionId);
+    }
+
+    @DeleteMapping("/{sessionId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void abort(
+            @PathVariable String sessionId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        String username = userDetails.getUsername();
+        chunkedUploadService.abort(username, sessionId);
+    }
+}
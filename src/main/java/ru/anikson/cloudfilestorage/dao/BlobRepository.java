@@ -0,0 +1,34 @@
+package ru.anikson.cloudfilestorage.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.anikson.cloudfilestorage.entity.Blob;
+
+public interface BlobRepository extends JpaRepository<Blob, String> {
+
+    // Ссылка на уже существующий блоб; 0 — блоба нет, содержимое нужно загрузить
+    @Transactional
+    @Modifying
+    @Query(value = "update blobs set ref_count = ref_count + 1 where digest = :digest", nativeQuery = true)
+    int acquireExisting(@Param("digest") String digest);
+
+    // Регистрация загруженного блоба (или ссылка, если его успели загрузить параллельно)
+    @Transactional
+    @Modifying
+    @Query(value = """
+            insert into blobs (digest, size, ref_count) values (:digest, :size, 1)
+            on conflict (digest) do update set ref_count = blobs.ref_count + 1
+            """, nativeQuery = true)
+    void insertOrAcquire(@Param("digest") String digest, @Param("size") long size);
+
+    @Modifying
+    @Query(value = "update blobs set ref_count = ref_count - :count where digest = :digest", nativeQuery = true)
+    int release(@Param("digest") String digest, @Param("count") long count);
+
+    @Modifying
+    @Query(value = "delete from blobs where digest = :digest and ref_count <= 0", nativeQuery = true)
+    int deleteUnreferenced(@Param("digest") String digest);
+}
@@ -0,0 +1,304 @@
+package ru.anikson.cloudfilestorage.dao;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.anikson.cloudfilestorage.entity.ResourceMetadata;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ResourceMetadataRepository extends JpaRepository<ResourceMetadata, Long>, ResourceMetadataRepositoryCustom {
+
+    Optional<ResourceMetadata> findByUsernameAndPath(String username, String path);
+
+    boolean existsByUsernameAndPath(String username, String path);
+
+    // Содержимое папки без самого корня (у корня родитель — он сам); папки идут раньше файлов: "DIRECTORY" < "FILE"
+    @Query("""
+            select r from ResourceMetadata r
+            where r.username = :username and r.parentPath = :parentPath and r.path <> ''
+            order by r.type, r.name
+            """)
+    List<ResourceMetadata> findChildren(@Param("username") String username, @Param("parentPath") String parentPath);
+
+    // Поиск по имени (префикс или подстрока задаются шаблоном), использует триграммный индекс по name
+    @Query(value = """
+            select * from resources
+            where username = :username and path <> ''
+              and name ilike :pattern escape '\\'
+              and (cast(:type as varchar) is null or type = cast(:type as varchar))
+              and (cast(:minSize as bigint) is null or size >= cast(:minSize as bigint))
+              and (cast(:maxSize as bigint) is null or size <= cast(:maxSize as bigint))
+            order by name, path
+            """, nativeQuery = true)
+    List<ResourceMetadata> searchByName(@Param("username") String username,
+                                        @Param("pattern") String pattern,
+                                        @Param("type") String type,
+                                        @Param("minSize") Long minSize,
+                                        @Param("maxSize") Long maxSize,
+                                        Pageable pageable);
+
+    // Поиск по подстроке полного пути, использует триграммный индекс по path
+    @Query(value = """
+            select * from resources
+            where username = :username and path <> ''
+              and path ilike :pattern escape '\\'
+              and (cast(:type as varchar) is null or type = cast(:type as varchar))
+              and (cast(:minSize as bigint) is null or size >= cast(:minSize as bigint))
+              and (cast(:maxSize as bigint) is null or size <= cast(:maxSize as bigint))
+            order by path
+            """, nativeQuery = true)
+    List<ResourceMetadata> searchByPath(@Param("username") String username,
+                                        @Param("pattern") String pattern,
+                                        @Param("type") String type,
+                                        @Param("minSize") Long minSize,
+                                        @Param("maxSize") Long maxSize,
+                                        Pageable pageable);
+
+    // Запись по пути под блокировкой строки (select ... for update) до конца транзакции
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from ResourceMetadata r where r.username = :username and r.path = :path")
+    Optional<ResourceMetadata> findForUpdate(@Param("username") String username, @Param("path") String path);
+
+    // Вставка записи файла, если пути ещё нет; 0 — запись уже есть (в том числе вставленная конкурентной транзакцией)
+    @Modifying
+    @Query(value = """
+            insert into resources (username, path, parent_path, name, type, size, etag, last_modified, digest)
+            values (:username, :path, :parentPath, :name, 'FILE', cast(:size as bigint), :etag,
+                    cast(:lastModified as timestamptz), cast(:digest as varchar))
+            on conflict (username, path) do nothing
+            """, nativeQuery = true)
+    int insertFileIfAbsent(@Param("username") String username,
+                           @Param("path") String path,
+                           @Param("parentPath") String parentPath,
+                           @Param("name") String name,
+                           @Param("size") Long size,
+                           @Param("etag") String etag,
+                           @Param("lastModified") ZonedDateTime lastModified,
+                           @Param("digest") String digest);
+
+    // Обновление записи файла; строка уже заблокирована через findForUpdate
+    @Modifying
+    @Query(value = """
+            update resources
+            set size = cast(:size as bigint), etag = :etag, last_modified = cast(:lastModified as timestamptz),
+                digest = cast(:digest as varchar)
+            where username = :username and path = :path
+            """, nativeQuery = true)
+    int updateFile(@Param("username") String username,
+                   @Param("path") String path,
+                   @Param("size") Long size,
+                   @Param("etag") String etag,
+                   @Param("lastModified") ZonedDateTime lastModified,
+                   @Param("digest") String digest);
+
+    // Вставка папки, если её ещё нет (неявные родительские папки); итоги новой папки нулевые
+    @Modifying
+    @Query(value = """
+            insert into resources (username, path, parent_path, name, type, total_size, file_count)
+            values (:username, :path, :parentPath, :name, 'DIRECTORY', 0, 0)
+            on conflict (username, path) do nothing
+            """, nativeQuery = true)
+    void insertDirectoryIfAbsent(@Param("username") String username,
+                                 @Param("path") String path,
+                                 @Param("parentPath") String parentPath,
+                                 @Param("name") String name);
+
+    // Изменение итогов папок (размер и число файлов поддерева) на изменение одного файла.
+    // Папки обновляются одним запросом в порядке индекса, поэтому конкурентные записи блокируют их в одном порядке
+    @Modifying
+    @Query(value = """
+            update resources
+            set total_size = total_size + :bytes, file_count = file_count + :files
+            where username = :username and path in (:paths) and type = 'DIRECTORY'
+            """, nativeQuery = true)
+    int addToDirectoryTotals(@Param("username") String username,
+                             @Param("paths") Collection<String> paths,
+                             @Param("bytes") long bytes,
+                             @Param("files") long files);
+
+    // Изменение итогов папок на все файлы дерева (sign = -1 — вычитание); вызывается, пока дерево на месте
+    @Modifying
+    @Query(value = """
+            update resources d
+            set total_size = d.total_size + :sign * tree.bytes, file_count = d.file_count + :sign * tree.files
+            from (select coalesce(sum(size), 0) as bytes, count(*) as files from resources
+                  where username = :username and (path = :path or path like :pattern escape '\\') and type = 'FILE') tree
+            where d.username = :username and d.path in (:paths) and d.type = 'DIRECTORY'
+            """, nativeQuery = true)
+    int addTreeToDirectoryTotals(@Param("username") String username,
+                                 @Param("path") String path,
+                                 @Param("pattern") String pattern,
+                                 @Param("paths") Collection<String> paths,
+                                 @Param("sign") int sign);
+
+    // Вычитание из итогов папок файлов, которые будут вытеснены перемещаемым деревом
+    @Modifying
+    @Query(value = """
+            update resources d
+            set total_size = d.total_size - targets.bytes, file_count = d.file_count - targets.files
+            from (select coalesce(sum(size), 0) as bytes, count(*) as files from resources
+                  where username = :username and type = 'FILE' and path in (
+                      select :toPath || substr(source.path, length(:fromPath) + 1)
+                      from resources source
+                      where source.username = :username and (source.path = :fromPath or source.path like :pattern escape '\\'))) targets
+            where d.username = :username and d.path in (:paths) and d.type = 'DIRECTORY'
+            """, nativeQuery = true)
+    int subtractMoveTargetsFromDirectoryTotals(@Param("username") String username,
+                                               @Param("fromPath") String fromPath,
+                                               @Param("toPath") String toPath,
+                                               @Param("pattern") String pattern,
+                                               @Param("paths") Collection<String> paths);
+
+    // Пересчёт итогов всех папок пользователя: каждый файл учитывается в каждой папке своего пути.
+    // Один проход по файлам, без обхода дерева для каждой папки
+    @Modifying
+    @Query(value = """
+            update resources d
+            set total_size = coalesce(totals.bytes, 0), file_count = coalesce(totals.files, 0)
+            from resources dir
+            left join (select substr(f.path, 1, slash.pos) as path, sum(f.size) as bytes, count(*) as files
+                       from resources f
+                       cross join lateral (select 0 as pos union all
+                                           select p from generate_series(1, length(f.path)) p
+                                           where substr(f.path, p, 1) = '/') slash
+                       where f.username = :username and f.type = 'FILE'
+                       group by substr(f.path, 1, slash.pos)) totals on totals.path = dir.path
+            where d.id = dir.id and dir.username = :username and dir.type = 'DIRECTORY'
+            """, nativeQuery = true)
+    int recalculateDirectoryTotals(@Param("username") String username);
+
+    // Пересчёт итогов папок одного дерева (сама папка path и вложенные) по его файлам
+    @Modifying
+    @Query(value = """
+            update resources d
+            set total_size = coalesce(totals.bytes, 0), file_count = coalesce(totals.files, 0)
+            from resources dir
+            left join (select substr(f.path, 1, slash.pos) as path, sum(f.size) as bytes, count(*) as files
+                       from resources f
+                       cross join lateral (select 0 as pos union all
+                                           select p from generate_series(1, length(f.path)) p
+                                           where substr(f.path, p, 1) = '/') slash
+                       where f.username = :username and f.type = 'FILE' and f.path like :pattern escape '\\'
+                       group by substr(f.path, 1, slash.pos)) totals on totals.path = dir.path
+            where d.id = dir.id and dir.username = :username and dir.type = 'DIRECTORY'
+              and (dir.path = :path or dir.path like :pattern escape '\\')
+            """, nativeQuery = true)
+    int recalculateTreeDirectoryTotals(@Param("username") String username,
+                                       @Param("path") String path,
+                                       @Param("pattern") String pattern);
+
+    @Modifying
+    @Query(value = """
+            delete from resources
+            where username = :username and (path = :path or path like :pattern escape '\\')
+            """, nativeQuery = true)
+    int deleteTree(@Param("username") String username, @Param("path") String path, @Param("pattern") String pattern);
+
+    // Блобы, на которые ссылаются записи дерева (по одному значению на ссылку)
+    @Query(value = """
+            select digest from resources
+            where username = :username and (path = :path or path like :pattern escape '\\') and digest is not null
+            """, nativeQuery = true)
+    List<String> findTreeDigests(@Param("username") String username, @Param("path") String path, @Param("pattern") String pattern);
+
+    // Блобы записей, которые будут вытеснены перемещаемым деревом
+    @Query(value = """
+            select digest from resources
+            where username = :username and digest is not null and path in (
+                select :toPath || substr(source.path, length(:fromPath) + 1)
+                from resources source
+                where source.username = :username and (source.path = :fromPath or source.path like :pattern escape '\\'))
+            """, nativeQuery = true)
+    List<String> findMoveTargetDigests(@Param("username") String username,
+                                       @Param("fromPath") String fromPath,
+                                       @Param("toPath") String toPath,
+                                       @Param("pattern") String pattern);
+
+    // Пути файлов из хранилища блобов: их нет в листинге MinIO, и при перестроении индекса они сохраняются
+    @Query(value = "select path from resources where username = :username and digest is not null", nativeQuery = true)
+    List<String> findBlobPaths(@Param("username") String username);
+
+    // Страница дерева папки в порядке путей (обход для архива)
+    @Query(value = """
+            select * from resources
+            where username = :username and path like :pattern escape '\\' and path > :after
+            order by path
+            limit :limit
+            """, nativeQuery = true)
+    List<ResourceMetadata> findTreePage(@Param("username") String username,
+                                        @Param("pattern") String pattern,
+                                        @Param("after") String after,
+                                        @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "delete from resources where username = :username and digest is null", nativeQuery = true)
+    int deletePlainByUser(@Param("username") String username);
+
+    @Modifying
+    @Query(value = "delete from resources where username = :username and path = :path", nativeQuery = true)
+    int deleteByPath(@Param("username") String username, @Param("path") String path);
+
+    // Удаление файлов по адресам, которые займёт перемещаемое дерево (MinIO при копировании их перезаписывает).
+    // Существующие папки назначения остаются: перемещаемое дерево сливается с ними
+    @Modifying
+    @Query(value = """
+            delete from resources
+            where username = :username and type = 'FILE' and path in (
+                select :toPath || substr(source.path, length(:fromPath) + 1)
+                from resources source
+                where source.username = :username and (source.path = :fromPath or source.path like :pattern escape '\\'))
+            """, nativeQuery = true)
+    int deleteMoveTargets(@Param("username") String username,
+                          @Param("fromPath") String fromPath,
+                          @Param("toPath") String toPath,
+                          @Param("pattern") String pattern);
+
+    // Удаление папок перемещаемого дерева (включая корень), у которых в месте назначения уже есть папка:
+    // их содержимое переезжает в существующую папку, а итоги слитых папок пересчитываются
+    @Modifying
+    @Query(value = """
+            delete from resources source
+            where source.username = :username and source.type = 'DIRECTORY'
+              and (source.path = :fromPath or source.path like :pattern escape '\\')
+              and exists (select 1 from resources target
+                          where target.username = :username and target.type = 'DIRECTORY'
+                            and target.path = :toPath || substr(source.path, length(:fromPath) + 1))
+            """, nativeQuery = true)
+    int deleteMergedSourceDirectories(@Param("username") String username,
+                                      @Param("fromPath") String fromPath,
+                                      @Param("toPath") String toPath,
+                                      @Param("pattern") String pattern);
+
+    // Перенос содержимого дерева: меняется только начало пути у вложенных записей
+    @Modifying
+    @Query(value = """
+            update resources
+            set path = :toPath || substr(path, length(:fromPath) + 1),
+                parent_path = :toPath || substr(parent_path, length(:fromPath) + 1)
+            where username = :username and path like :pattern escape '\\' and path <> :fromPath
+            """, nativeQuery = true)
+    int moveDescendants(@Param("username") String username,
+                        @Param("fromPath") String fromPath,
+                        @Param("toPath") String toPath,
+                        @Param("pattern") String pattern);
+
+    @Modifying
+    @Query(value = """
+            update resources
+            set path = :toPath, parent_path = :parentPath, name = :name
+            where username = :username and path = :fromPath
+            """, nativeQuery = true)
+    int moveEntry(@Param("username") String username,
+                  @Param("fromPath") String fromPath,
+                  @Param("toPath") String toPath,
+                  @Param("parentPath") String parentPath,
+                  @Param("name") String name);
+}
@@ -0,0 +1,14 @@
+package ru.anikson.cloudfilestorage.dao;
+
+import org.springframework.data.domain.Sort;
+import ru.anikson.cloudfilestorage.dto.resource.DirectorySort;
+import ru.anikson.cloudfilestorage.entity.ResourceMetadata;
+
+import java.util.List;
+
+public interface ResourceMetadataRepositoryCustom {
+
+    // Страница содержимого папки по ключу (keyset): записи строго после after в заданном порядке
+    List<ResourceMetadata> findChildrenAfter(String username, String parentPath, DirectorySort sort,
+                                             Sort.Direction direction, ResourceMetadata after, int limit);
+}
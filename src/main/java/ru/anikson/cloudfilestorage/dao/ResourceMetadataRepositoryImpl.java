@@ -0,0 +1,77 @@
+package ru.anikson.cloudfilestorage.dao;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.data.domain.Sort;
+import ru.anikson.cloudfilestorage.dto.resource.DirectorySort;
+import ru.anikson.cloudfilestorage.entity.ResourceMetadata;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+// Порядок: тип (папки раньше файлов), ключ сортировки, имя. Тройка уникальна внутри папки,
+// поэтому страница продолжается сравнением с последней записью предыдущей, без OFFSET.
+// У папок нет размера и может не быть даты изменения — такие значения сравниваются как -1 и эпоха.
+public class ResourceMetadataRepositoryImpl implements ResourceMetadataRepositoryCustom {
+
+    private static final long NO_SIZE = -1L;
+    private static final ZonedDateTime NO_TIME = ZonedDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ResourceMetadata> findChildrenAfter(String username, String parentPath, DirectorySort sort,
+                                                    Sort.Direction direction, ResourceMetadata after, int limit) {
+        String key = switch (sort) {
+            case NAME -> "r.name";
+            case SIZE -> "coalesce(r.size, :noSize)";
+            case MODIFIED -> "coalesce(r.lastModified, :noTime)";
+        };
+        String compare = direction.isDescending() ? "<" : ">";
+
+        StringBuilder jpql = new StringBuilder("""
+                select r from ResourceMetadata r
+                where r.username = :username and r.parentPath = :parentPath and r.path <> ''
+                """);
+        if (after != null) {
+            jpql.append(" and (r.type > :afterType or (r.type = :afterType and (");
+            if (sort == DirectorySort.NAME) {
+                jpql.append("r.name ").append(compare).append(" :afterName");
+            } else {
+                jpql.append(key).append(' ').append(compare).append(" :afterKey or (")
+                        .append(key).append(" = :afterKey and r.name > :afterName)");
+            }
+            jpql.append(")))");
+        }
+        jpql.append(" order by r.type asc, ").append(key).append(direction.isDescending() ? " desc" : " asc");
+        if (sort != DirectorySort.NAME) {
+            jpql.append(", r.name asc");
+        }
+
+        TypedQuery<ResourceMetadata> query = entityManager.createQuery(jpql.toString(), ResourceMetadata.class)
+                .setParameter("username", username)
+                .setParameter("parentPath", parentPath);
+        if (sort == DirectorySort.SIZE) {
+            query.setParameter("noSize", NO_SIZE);
+        } else if (sort == DirectorySort.MODIFIED) {
+            query.setParameter("noTime", NO_TIME);
+        }
+        if (after != null) {
+            query.setParameter("afterType", after.getType());
+            query.setParameter("afterName", after.getName());
+            if (sort == DirectorySort.SIZE) {
+                query.setParameter("afterKey", after.getSize() != null ? after.getSize() : NO_SIZE);
+            } else if (sort == DirectorySort.MODIFIED) {
+                query.setParameter("afterKey", after.getLastModified() != null ? after.getLastModified() : NO_TIME);
+            }
+        }
+        if (limit > 0) {
+            query.setMaxResults(limit);
+        }
+        return query.getResultList();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.anikson.cloudfilestorage.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.anikson.cloudfilestorage.entity.StorageReservation;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public interface StorageReservationRepository extends JpaRepository<StorageReservation, UUID> {
+
+    // Блокировка строки счётчиков пользователя (создаётся при отсутствии):
+    // резервы одного пользователя проверяются и записываются по очереди
+    @Modifying
+    @Query(value = """
+            insert into user_storage_usage (username, used_bytes, object_count)
+            values (:username, 0, 0)
+            on conflict (username) do update set used_bytes = user_storage_usage.used_bytes
+            """, nativeQuery = true)
+    void lockUsage(@Param("username") String username);
+
+    @Modifying
+    @Query(value = "delete from storage_reservations where username = :username and expires_at <= :now", nativeQuery = true)
+    int deleteExpired(@Param("username") String username, @Param("now") Instant now);
+
+    // Резерв записывается, только если занятое место вместе с активными резервами и новым укладывается в квоту;
+    // 0 — квота превышена
+    @Modifying
+    @Query(value = """
+            insert into storage_reservations (id, username, bytes, expires_at)
+            select :id, :username, :bytes, :expiresAt
+            from user_storage_usage u
+            where u.username = :username
+              and u.used_bytes + :bytes + (select coalesce(sum(r.bytes), 0) from storage_reservations r
+                                           where r.username = :username) <= :quota
+            """, nativeQuery = true)
+    int insertWithinQuota(@Param("id") UUID id,
+                          @Param("username") String username,
+                          @Param("bytes") long bytes,
+                          @Param("expiresAt") Instant expiresAt,
+                          @Param("quota") long quota);
+
+    @Query(value = """
+            select coalesce(sum(bytes), 0) from storage_reservations
+            where username = :username and expires_at > :now
+            """, nativeQuery = true)
+    long sumActive(@Param("username") String username, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update storage_reservations set expires_at = :expiresAt where id = :id", nativeQuery = true)
+    int extend(@Param("id") UUID id, @Param("expiresAt") Instant expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from storage_reservations where id = :id", nativeQuery = true)
+    int release(@Param("id") UUID id);
+}
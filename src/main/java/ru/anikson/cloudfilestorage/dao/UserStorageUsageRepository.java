@@ -0,0 +1,60 @@
+package ru.anikson.cloudfilestorage.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.anikson.cloudfilestorage.entity.UserStorageUsage;
+
+public interface UserStorageUsageRepository extends JpaRepository<UserStorageUsage, String> {
+
+    // Атомарное изменение счётчиков; конкурентные загрузки одного пользователя не теряют обновления
+    @Modifying
+    @Query(value = """
+            insert into user_storage_usage (username, used_bytes, object_count)
+            values (:username, :bytes, :files)
+            on conflict (username) do update
+            set used_bytes = user_storage_usage.used_bytes + excluded.used_bytes,
+                object_count = user_storage_usage.object_count + excluded.object_count
+            """, nativeQuery = true)
+    void add(@Param("username") String username, @Param("bytes") long bytes, @Param("files") long files);
+
+    // Вычитание файлов дерева папки; вызывается до удаления записей дерева
+    @Modifying
+    @Query(value = """
+            update user_storage_usage u
+            set used_bytes = u.used_bytes - tree.bytes, object_count = u.object_count - tree.files
+            from (select coalesce(sum(size), 0) as bytes, count(*) as files from resources
+                  where username = :username and (path = :path or path like :pattern escape '\\') and type = 'FILE') tree
+            where u.username = :username
+            """, nativeQuery = true)
+    int subtractTree(@Param("username") String username, @Param("path") String path, @Param("pattern") String pattern);
+
+    // Вычитание файлов, которые будут вытеснены перемещаемым деревом
+    @Modifying
+    @Query(value = """
+            update user_storage_usage u
+            set used_bytes = u.used_bytes - targets.bytes, object_count = u.object_count - targets.files
+            from (select coalesce(sum(size), 0) as bytes, count(*) as files from resources
+                  where username = :username and type = 'FILE' and path in (
+                      select :toPath || substr(source.path, length(:fromPath) + 1)
+                      from resources source
+                      where source.username = :username and (source.path = :fromPath or source.path like :pattern escape '\\'))) targets
+            where u.username = :username
+            """, nativeQuery = true)
+    int subtractMoveTargets(@Param("username") String username,
+                            @Param("fromPath") String fromPath,
+                            @Param("toPath") String toPath,
+                            @Param("pattern") String pattern);
+
+    // Пересчёт счётчиков пользователя по индексу метаданных
+    @Modifying
+    @Query(value = """
+            insert into user_storage_usage (username, used_bytes, object_count)
+            select :username, coalesce(sum(size), 0), count(*) from resources
+            where username = :username and type = 'FILE'
+            on conflict (username) do update
+            set used_bytes = excluded.used_bytes, object_count = excluded.object_count
+            """, nativeQuery = true)
+    void recalculate(@Param("username") String username);
+}
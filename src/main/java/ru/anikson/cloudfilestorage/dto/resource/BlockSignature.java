@@ -0,0 +1,9 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+// Контрольные суммы одного блока файла: слабая (скользящая, как в rsync) и сильная (SHA-256, hex)
+public record BlockSignature(
+        int index,
+        long weak,
+        String strong
+) {
+}
@@ -0,0 +1,8 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+// Итог удаления: сколько объектов удалено и сколько удалить не удалось
+public record DeleteResult(
+        long deleted,
+        long failed
+) {
+}
@@ -0,0 +1,9 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+// Шаг сборки новой версии файла; offset нужен только для COPY
+public record DeltaInstruction(
+        DeltaOperation operation,
+        long offset,
+        long length
+) {
+}
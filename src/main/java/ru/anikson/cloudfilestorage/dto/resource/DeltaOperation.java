@@ -0,0 +1,7 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+// Операция дельты: COPY — диапазон текущей версии файла, DATA — следующие байты из тела запроса
+public enum DeltaOperation {
+    COPY,
+    DATA
+}
@@ -0,0 +1,14 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Скачивание папки: имя ZIP-архива и запись самого архива, которая выполняется уже при отправке ответа.
+// release освобождает слот передачи, если запись архива так и не начнётся (ответ не удалось собрать).
+public record DirectoryDownload(String archiveName, ArchiveWriter archive, Runnable release) {
+
+    @FunctionalInterface
+    public interface ArchiveWriter {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+}
@@ -0,0 +1,12 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+import ru.anikson.cloudfilestorage.entity.ResourceInfo;
+
+import java.util.List;
+
+// Страница содержимого папки; nextCursor == null, если страница последняя
+public record DirectoryPage(
+        List<ResourceInfo> items,
+        String nextCursor
+) {
+}
@@ -0,0 +1,8 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+// Поле сортировки содержимого папки; папки всегда идут раньше файлов
+public enum DirectorySort {
+    NAME,
+    SIZE,
+    MODIFIED
+}
@@ -0,0 +1,16 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+import org.springframework.http.HttpRange;
+
+import java.util.List;
+
+// Условия скачивания из заголовков запроса: диапазон (Range/If-Range), проверка версии клиента
+// (If-None-Match, If-Modified-Since; -1 — заголовка нет) и готовность принять gzip (Accept-Encoding)
+public record DownloadRequest(
+        List<HttpRange> ranges,
+        String ifRange,
+        List<String> ifNoneMatch,
+        long ifModifiedSince,
+        boolean acceptsGzip
+) {
+}
@@ -0,0 +1,15 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+import java.util.List;
+
+// Сигнатура текущей версии файла для дельта-обновления: блоки по blockSize байт (последний может быть короче).
+// etag передаётся обратно при отправке дельты, чтобы сервер применил её к той же версии.
+public record FileSignature(
+        String path,
+        String name,
+        long size,
+        String etag,
+        int blockSize,
+        List<BlockSignature> blocks
+) {
+}
@@ -0,0 +1,24 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+// Результат загрузки одного файла из пакета: 201 при успехе, иначе код ошибки и её описание
+public record FileUploadResult(
+        String path,
+        String name,
+        Long size,
+        String type,
+        int status,
+        String detail
+) {
+
+    public static FileUploadResult uploaded(String path, String name, long size) {
+        return new FileUploadResult(path, name, size, "FILE", 201, null);
+    }
+
+    public static FileUploadResult failed(String path, String name, Long size, int status, String detail) {
+        return new FileUploadResult(path, name, size, "FILE", status, detail);
+    }
+
+    public boolean succeeded() {
+        return status == 201;
+    }
+}
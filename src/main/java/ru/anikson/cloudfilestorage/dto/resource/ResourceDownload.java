@@ -0,0 +1,42 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+import org.springframework.core.io.InputStreamSource;
+
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+
+// Описание скачиваемого объекта: метаданные и (возможно частичный) диапазон байт.
+// Поток открывается лениво через content, уже при записи ответа.
+// localFile — файл на локальном диске (файловое хранилище), его можно отдать через sendfile, иначе null.
+// contentEncoding — кодек, если сжатый объект отдаётся как есть; varyByEncoding — ответ зависит от Accept-Encoding.
+// notModified — у клиента уже эта версия (304): содержимого нет, передача не начиналась.
+// release освобождает слот передачи, если content так и не будет открыт: ответ не удалось собрать
+// или файл отдан через sendfile (повторный вызов и закрытие потока после него ничего не делают).
+public record ResourceDownload(
+        String fileName,
+        String contentType,
+        String contentEncoding,
+        boolean varyByEncoding,
+        long totalSize,
+        long offset,
+        long length,
+        boolean partial,
+        String etag,
+        ZonedDateTime lastModified,
+        InputStreamSource content,
+        Path localFile,
+        boolean notModified,
+        Runnable release
+) {
+
+    // Ответ 304: только валидаторы версии
+    public static ResourceDownload notModified(String fileName, String etag, ZonedDateTime lastModified, boolean varyByEncoding) {
+        return new ResourceDownload(fileName, null, null, varyByEncoding, 0, 0, 0, false,
+                etag, lastModified, null, null, true, () -> { });
+    }
+
+    // Последний байт диапазона (включительно), нужен для заголовка Content-Range
+    public long end() {
+        return offset + length - 1;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+// Параметры поиска: регистр не учитывается, фильтры по типу и размеру необязательны
+public record ResourceSearchQuery(
+        String query,
+        SearchMode mode,
+        String type,
+        Long minSize,
+        Long maxSize,
+        int page,
+        int size
+) {
+}
@@ -0,0 +1,8 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+// Режим поиска: по началу имени, по подстроке имени или по подстроке полного пути
+public enum SearchMode {
+    PREFIX,
+    SUBSTRING,
+    PATH
+}
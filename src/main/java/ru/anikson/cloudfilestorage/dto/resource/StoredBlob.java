@@ -0,0 +1,8 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+// Содержимое файла в хранилище блобов: SHA-256 и размер
+public record StoredBlob(
+        String digest,
+        long size
+) {
+}
@@ -0,0 +1,11 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+import org.springframework.core.io.InputStreamSource;
+
+// Миниатюра изображения: версия (ETag по версии исходного файла), размер и содержимое (JPEG)
+public record ThumbnailDownload(
+        String etag,
+        long length,
+        InputStreamSource content
+) {
+}
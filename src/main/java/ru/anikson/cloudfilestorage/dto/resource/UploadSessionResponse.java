@@ -0,0 +1,16 @@
+package ru.anikson.cloudfilestorage.dto.resource;
+
+import java.util.List;
+
+// Состояние сессии загрузки по частям: какие части уже приняты и сколько байт получено
+public record UploadSessionResponse(
+        String sessionId,
+        String path,
+        String name,
+        long size,
+        long chunkSize,
+        int totalChunks,
+        List<Integer> receivedChunks,
+        long receivedBytes
+) {
+}
@@ -0,0 +1,25 @@
+package ru.anikson.cloudfilestorage.dto.storage;
+
+import java.time.ZonedDateTime;
+
+// Объект хранилища: полный ключ, размер, ETag без кавычек, время изменения и тип содержимого (может быть null).
+// Сжатый объект хранит кодек в метаданных: size — размер в хранилище, decodedSize — размер исходного содержимого.
+// Тип содержимого листинг не возвращает, поэтому у объектов из листинга contentType — null.
+public record StorageObject(
+        String name,
+        long size,
+        String etag,
+        ZonedDateTime lastModified,
+        String contentType,
+        String encoding,
+        long decodedSize
+) {
+
+    public StorageObject(String name, long size, String etag, ZonedDateTime lastModified, String contentType) {
+        this(name, size, etag, lastModified, contentType, null, size);
+    }
+
+    public boolean isEncoded() {
+        return encoding != null;
+    }
+}
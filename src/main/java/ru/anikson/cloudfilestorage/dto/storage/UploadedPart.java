@@ -0,0 +1,8 @@
+package ru.anikson.cloudfilestorage.dto.storage;
+
+// Принятая часть multipart-загрузки (нумерация с единицы)
+public record UploadedPart(
+        int partNumber,
+        String etag
+) {
+}
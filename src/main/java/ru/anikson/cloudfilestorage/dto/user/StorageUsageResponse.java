@@ -0,0 +1,9 @@
+package ru.anikson.cloudfilestorage.dto.user;
+
+// Занятое место; quotaBytes == null — квота не ограничена
+public record StorageUsageResponse(
+        long usedBytes,
+        long objectCount,
+        Long quotaBytes
+) {
+}
@@ -0,0 +1,7 @@
+package ru.anikson.cloudfilestorage.dto.user;
+
+// Запущенный пересчёт занятого места: сколько пользователей будет обработано
+public record UsageRebuildResponse(
+        int users
+) {
+}
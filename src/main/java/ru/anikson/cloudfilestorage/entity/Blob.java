@@ -0,0 +1,23 @@
+package ru.anikson.cloudfilestorage.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Блоб в хранилище с адресацией по содержимому: одно содержимое хранится один раз,
+// refCount — сколько файлов пользователей на него ссылается
+@Data
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "blobs")
+public class Blob {
+    @Id
+    private String digest;
+
+    private Long size;
+    private Long refCount;
+}
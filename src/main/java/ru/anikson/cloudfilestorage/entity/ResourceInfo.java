@@ -14,4 +14,5 @@ public class ResourceInfo {
     private String name;
     private Long size;
     private String type;
+    private Long fileCount; // Число файлов в папке со всеми вложенными (у файлов нет)
 }
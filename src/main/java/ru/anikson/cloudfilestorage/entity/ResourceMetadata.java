@@ -0,0 +1,36 @@
+package ru.anikson.cloudfilestorage.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+// Запись индекса метаданных: один файл или папка пользователя.
+// Пути хранятся относительно корня пользователя: корень — "", папки оканчиваются на "/".
+// Файл без digest хранится объектом под префиксом пользователя, с digest — общим блобом.
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "resources")
+public class ResourceMetadata {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String username;
+    private String path;
+    private String parentPath;
+    private String name;
+    private String type;
+    private Long size;
+    private String etag;
+    private ZonedDateTime lastModified;
+    private String digest; // SHA-256 содержимого, если файл лежит в хранилище блобов
+    private Long totalSize; // Суммарный размер файлов поддерева (только у папок)
+    private Long fileCount; // Число файлов поддерева (только у папок)
+}
@@ -0,0 +1,27 @@
+package ru.anikson.cloudfilestorage.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// Место, зарезервированное под идущую загрузку: учитывается при проверке квоты,
+// пока содержимое не записано в индекс; просроченные резервы (упавшие загрузки) не учитываются
+@Data
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "storage_reservations")
+public class StorageReservation {
+    @Id
+    private UUID id;
+
+    private String username;
+    private Long bytes;
+    private Instant expiresAt;
+}
@@ -0,0 +1,23 @@
+package ru.anikson.cloudfilestorage.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Занятое пользователем место: счётчики обновляются в тех же транзакциях, что и индекс метаданных,
+// поэтому проверка квоты — чтение одной строки, а не обход файлов
+@Data
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "user_storage_usage")
+public class UserStorageUsage {
+    @Id
+    private String username;
+
+    private Long usedBytes;
+    private Long objectCount;
+}
@@ -0,0 +1,7 @@
+package ru.anikson.cloudfilestorage.exception;
+
+public class QuotaExceededException extends RuntimeException {
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.anikson.cloudfilestorage.exception;
+
+public class RangeNotSatisfiableException extends RuntimeException {
+
+    private final long resourceSize;
+
+    public RangeNotSatisfiableException(String message, long resourceSize) {
+        super(message);
+        this.resourceSize = resourceSize;
+    }
+
+    public long getResourceSize() {
+        return resourceSize;
+    }
+}
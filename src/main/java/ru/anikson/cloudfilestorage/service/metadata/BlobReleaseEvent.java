@@ -0,0 +1,9 @@
+package ru.anikson.cloudfilestorage.service.metadata;
+
+import java.util.List;
+
+// Ссылки на блобы, которые освободились после коммита изменения индекса (по одному элементу на ссылку)
+public record BlobReleaseEvent(
+        List<String> digests
+) {
+}
@@ -0,0 +1,44 @@
+package ru.anikson.cloudfilestorage.service.metadata;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// ETag ответов с метаданными (информация о ресурсе, листинг папки) — хеш их JSON-представления.
+// Ответ сериализуется прямо в SHA-256 без буфера; одинаковое содержимое всегда даёт один и тот же ETag,
+// поэтому повторный запрос неизменной папки стоит обмена заголовками (304) вместо передачи всего листинга.
+// ETag слабый: он описывает содержимое, а не байты ответа (сжатие или форматирование их меняют).
+@Service
+@RequiredArgsConstructor
+public class EtagService {
+
+    private static final int ETAG_HEX_LENGTH = 32; // 128 бит хеша достаточно для сравнения версий
+
+    private final ObjectMapper objectMapper; // Та же сериализация, что и у ответа
+
+    public String weakEtag(Object body) {
+        MessageDigest digest = sha256();
+        try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            objectMapper.writeValue(out, body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "W/\"" + HexFormat.of().formatHex(digest.digest()).substring(0, ETAG_HEX_LENGTH) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.anikson.cloudfilestorage.service.metadata;
+
+import ru.anikson.cloudfilestorage.entity.ResourceMetadata;
+import ru.anikson.cloudfilestorage.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Непрозрачный курсор листинга: ключ сортировки последней записи страницы в base64url.
+// Имя идёт последним полем, поэтому может содержать любые символы.
+final class ListingCursor {
+
+    private static final String SEPARATOR = "\n";
+
+    private ListingCursor() {
+    }
+
+    static String encode(ResourceMetadata last) {
+        String value = last.getType() + SEPARATOR
+                + (last.getSize() != null ? last.getSize() : "") + SEPARATOR
+                + (last.getLastModified() != null ? last.getLastModified() : "") + SEPARATOR
+                + last.getName();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Запись-образец, после которой продолжается листинг
+    static ResourceMetadata decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = value.split(SEPARATOR, 4);
+            if (parts.length != 4) {
+                throw new ValidationException("Invalid cursor: " + cursor);
+            }
+            return ResourceMetadata.builder()
+                    .type(parts[0])
+                    .size(parts[1].isEmpty() ? null : Long.parseLong(parts[1]))
+                    .lastModified(parts[2].isEmpty() ? null : ZonedDateTime.parse(parts[2]))
+                    .name(parts[3])
+                    .build();
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ValidationException("Invalid cursor: " + cursor); // Курсор повреждён или подделан
+        }
+    }
+}
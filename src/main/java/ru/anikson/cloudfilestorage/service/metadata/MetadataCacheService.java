@@ -0,0 +1,275 @@
+package ru.anikson.cloudfilestorage.service.metadata;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.anikson.cloudfilestorage.dto.resource.DirectoryPage;
+import ru.anikson.cloudfilestorage.entity.ResourceInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Двухуровневый кэш метаданных: локальный Caffeine (размер и TTL ограничены) и общий Redis.
+// Кэшируются информация о ресурсах и страницы листингов. После коммита изменения индекса сбрасываются
+// сам путь, все его предки и листинги предков, а для папок — ещё и всё поддерево.
+// Redis чистит узел-источник изменения, локальные кэши остальных узлов — по сообщению в канале pub/sub.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MetadataCacheService implements MessageListener, MeterBinder {
+
+    private static final String CHANNEL = "metadata-cache-invalidation";
+    private static final String KEY_PREFIX = "metadata-cache:";
+    private static final String INFO = "info";
+    private static final String LIST = "list";
+    private static final String SEPARATOR = "\n";
+
+    private final StringRedisTemplate redisTemplate; // Общий уровень кэша и канал инвалидации
+    private final RedisMessageListenerContainer redisMessageListenerContainer; // Подписка на инвалидацию
+    private final ObjectMapper objectMapper; // Сериализация значений для Redis
+
+    private final String nodeId = UUID.randomUUID().toString(); // Свои сообщения узел пропускает
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+    private Cache<CacheKey, Object> localCache;
+
+    @Value("${metadata.cache.local-max-size}")
+    private long localMaxSize;
+
+    @Value("${metadata.cache.local-ttl}")
+    private Duration localTtl;
+
+    @Value("${metadata.cache.redis-ttl}")
+    private Duration redisTtl;
+
+    @PostConstruct
+    void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .recordStats()
+                .build();
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    public ResourceInfo getResourceInfo(String username, String path, Supplier<ResourceInfo> loader) {
+        return get(new CacheKey(username, INFO, ResourcePaths.file(path), ""), ResourceInfo.class, loader);
+    }
+
+    // variant различает страницы одной папки (сортировка, размер страницы, курсор)
+    public DirectoryPage getDirectoryPage(String username, String path, String variant, Supplier<DirectoryPage> loader) {
+        return get(new CacheKey(username, LIST, ResourcePaths.directory(path), variant), DirectoryPage.class, loader);
+    }
+
+    // Метрики кэша: локальный уровень — стандартные метрики Caffeine, Redis — попадания и промахи
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, localCache, "metadata-local");
+        FunctionCounter.builder("cache.gets", redisHits, LongAdder::sum)
+                .tags("cache", "metadata-redis", "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", redisMisses, LongAdder::sum)
+                .tags("cache", "metadata-redis", "result", "miss")
+                .register(registry);
+    }
+
+    // Инвалидация после коммита транзакции, изменившей индекс
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onResourceMutation(ResourceMutationEvent event) {
+        Invalidation invalidation = new Invalidation(event.username(), event.path(), event.tree());
+        invalidateLocal(invalidation);
+        invalidateRedis(invalidation);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, String.join(SEPARATOR,
+                    nodeId, event.username(), event.tree() ? "1" : "0", event.path()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish metadata cache invalidation for {}: {}", event.username(), e.getMessage());
+        }
+    }
+
+    // Сообщение другого узла: чистим только свой локальный уровень
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(SEPARATOR, 4);
+        if (parts.length != 4 || nodeId.equals(parts[0])) {
+            return;
+        }
+        invalidateLocal(new Invalidation(parts[1], parts[3], "1".equals(parts[2])));
+    }
+
+    private <T> T get(CacheKey key, Class<T> type, Supplier<T> loader) {
+        Object cached = localCache.getIfPresent(key);
+        if (cached != null) {
+            return type.cast(cached);
+        }
+        T value = readRedis(key, type);
+        if (value == null) {
+            value = loader.get();
+            writeRedis(key, value);
+        }
+        localCache.put(key, value);
+        return value;
+    }
+
+    // Ошибки Redis не ломают чтение: кэш просто пропускается
+    private <T> T readRedis(CacheKey key, Class<T> type) {
+        try {
+            Object json = redisTemplate.opsForHash().get(redisKey(key.username()), key.field());
+            if (json == null) {
+                redisMisses.increment();
+                return null;
+            }
+            redisHits.increment();
+            return objectMapper.readValue((String) json, type);
+        } catch (RuntimeException | JsonProcessingException e) {
+            log.debug("Metadata cache read failed for {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRedis(CacheKey key, Object value) {
+        try {
+            String redisKey = redisKey(key.username());
+            redisTemplate.opsForHash().put(redisKey, key.field(), objectMapper.writeValueAsString(value));
+            redisTemplate.expire(redisKey, redisTtl);
+        } catch (RuntimeException | JsonProcessingException e) {
+            log.debug("Metadata cache write failed for {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void invalidateLocal(Invalidation invalidation) {
+        localCache.asMap().keySet().removeIf(invalidation::matches);
+    }
+
+    // Поля кэша пользователя лежат в одном хэше, поэтому инвалидация не требует обхода всего Redis
+    private void invalidateRedis(Invalidation invalidation) {
+        String redisKey = redisKey(invalidation.username());
+        try {
+            if (invalidation.tree() && invalidation.path().isEmpty()) {
+                redisTemplate.delete(redisKey);
+                return;
+            }
+            List<Object> stale = new ArrayList<>();
+            try (Cursor<Map.Entry<Object, Object>> fields = redisTemplate.opsForHash()
+                    .scan(redisKey, ScanOptions.scanOptions().count(1000).build())) {
+                while (fields.hasNext()) {
+                    Object field = fields.next().getKey();
+                    if (invalidation.matches(CacheKey.fromField(invalidation.username(), (String) field))) {
+                        stale.add(field);
+                    }
+                }
+            }
+            if (!stale.isEmpty()) {
+                redisTemplate.opsForHash().delete(redisKey, stale.toArray());
+            }
+        } catch (RuntimeException e) {
+            // Не удалось почистить Redis — убираем весь кэш пользователя, чтобы не отдавать устаревшие данные
+            log.warn("Metadata cache invalidation failed for {}: {}", invalidation.username(), e.getMessage());
+            try {
+                redisTemplate.delete(redisKey);
+            } catch (RuntimeException ignored) {
+                // Redis недоступен: записи истекут по TTL
+            }
+        }
+    }
+
+    private String redisKey(String username) {
+        return KEY_PREFIX + username;
+    }
+
+    private record CacheKey(String username, String kind, String path, String variant) {
+
+        String field() {
+            return kind + SEPARATOR + path + SEPARATOR + variant;
+        }
+
+        static CacheKey fromField(String username, String field) {
+            String[] parts = field.split(SEPARATOR, 3);
+            return parts.length == 3 ? new CacheKey(username, parts[0], parts[1], parts[2]) : new CacheKey(username, "", "", "");
+        }
+    }
+
+    // Набор затронутых ключей: сам путь, его предки и (для деревьев) всё, что под ним
+    private static final class Invalidation {
+
+        private final String username;
+        private final String path;
+        private final boolean tree;
+        private final Set<String> infoPaths = new HashSet<>();
+        private final Set<String> listPaths = new HashSet<>();
+
+        Invalidation(String username, String path, boolean tree) {
+            this.username = username;
+            this.path = path;
+            this.tree = tree;
+
+            // Путь папки может запрашиваться как с "/" на конце, так и без
+            addInfo(path);
+            for (String parent = ResourcePaths.parentOf(path); ; parent = ResourcePaths.parentOf(parent)) {
+                addInfo(parent);
+                listPaths.add(parent);
+                if (parent.isEmpty()) {
+                    break;
+                }
+            }
+            if (ResourcePaths.isDirectory(path)) {
+                listPaths.add(path);
+            }
+        }
+
+        String username() {
+            return username;
+        }
+
+        String path() {
+            return path;
+        }
+
+        boolean tree() {
+            return tree;
+        }
+
+        boolean matches(CacheKey key) {
+            if (!username.equals(key.username())) {
+                return false;
+            }
+            if (tree && key.path().startsWith(path)) {
+                return true;
+            }
+            return INFO.equals(key.kind()) ? infoPaths.contains(key.path()) : listPaths.contains(key.path());
+        }
+
+        private void addInfo(String resourcePath) {
+            infoPaths.add(resourcePath);
+            if (resourcePath.endsWith("/")) {
+                infoPaths.add(resourcePath.substring(0, resourcePath.length() - 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.anikson.cloudfilestorage.service.metadata;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Резерв места под загрузку; снимается при закрытии, после того как содержимое учтено в счётчиках
+public final class QuotaReservation implements AutoCloseable {
+
+    // Резерв, когда квота не ограничена или загружать нечего
+    public static final QuotaReservation NONE = new QuotaReservation(null, id -> { });
+
+    private final UUID id;
+    private final Consumer<UUID> releaser;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    QuotaReservation(UUID id, Consumer<UUID> releaser) {
+        this.id = id;
+        this.releaser = releaser;
+    }
+
+    // Идентификатор для хранения в сессии загрузки; null — резерва нет
+    public UUID id() {
+        return id;
+    }
+
+    // Снятие резерва сразу после учёта содержимого в счётчиках (повторное и close после него ничего не делают)
+    public void release() {
+        if (id != null && released.compareAndSet(false, true)) {
+            releaser.accept(id);
+        }
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+}
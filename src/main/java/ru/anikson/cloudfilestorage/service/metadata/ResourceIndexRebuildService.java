@@ -0,0 +1,123 @@
+package ru.anikson.cloudfilestorage.service.metadata;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.anikson.cloudfilestorage.dao.ResourceMetadataRepository;
+import ru.anikson.cloudfilestorage.dao.UserStorageUsageRepository;
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
+import ru.anikson.cloudfilestorage.entity.ResourceMetadata;
+import ru.anikson.cloudfilestorage.exception.ValidationException;
+import ru.anikson.cloudfilestorage.service.storage.StorageBackend;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Построение индекса метаданных пользователя по содержимому хранилища.
+// Индекс строится лениво при первом обращении: признак построенного индекса — запись корневой папки.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResourceIndexRebuildService {
+
+    private final StorageBackend storageBackend; // Хранилище содержимого файлов
+    private final ResourceMetadataRepository resourceMetadataRepository; // Индекс метаданных
+    private final UserStorageUsageRepository userStorageUsageRepository; // Счётчики занятого места
+    private final ApplicationEventPublisher eventPublisher; // События изменения индекса (инвалидация кэшей)
+
+    private final Set<String> indexedUsers = ConcurrentHashMap.newKeySet(); // Пользователи, чей индекс уже проверен на этом узле
+
+    // Построение индекса, если его ещё нет
+    @Transactional
+    public void ensureIndexed(String username) {
+        if (indexedUsers.contains(username)) {
+            return;
+        }
+        if (!resourceMetadataRepository.existsByUsernameAndPath(username, ResourcePaths.ROOT)) {
+            rebuild(username);
+        }
+        indexedUsers.add(username);
+    }
+
+    // Полное перестроение индекса пользователя по листингу хранилища, возвращает число записей.
+    // Файлы из хранилища блобов есть только в индексе, поэтому их записи сохраняются как есть.
+    // Счётчики занятого места и итоги папок пересчитываются по построенному индексу.
+    @Transactional
+    public long rebuild(String username) {
+        String userPrefix = getUserPrefix(username);
+        Map<String, ResourceMetadata> entries = new LinkedHashMap<>();
+        entries.put(ResourcePaths.ROOT, directoryEntry(username, ResourcePaths.ROOT));
+
+        Set<String> blobPaths = new HashSet<>(resourceMetadataRepository.findBlobPaths(username));
+        blobPaths.forEach(path -> addParents(username, path, entries));
+
+        try {
+            Iterator<StorageObject> objects = storageBackend.list(userPrefix, null); // Все объекты пользователя
+
+            while (objects.hasNext()) {
+                StorageObject item = objects.next();
+                String path = item.name().substring(userPrefix.length());
+                if (path.isEmpty() || blobPaths.contains(path)) {
+                    continue;
+                }
+                if (ResourcePaths.isDirectory(path)) {
+                    entries.putIfAbsent(path, directoryEntry(username, path)); // Маркер папки
+                } else {
+                    entries.put(path, ResourceMetadata.builder()
+                            .username(username)
+                            .path(path)
+                            .parentPath(ResourcePaths.parentOf(path))
+                            .name(ResourcePaths.nameOf(path))
+                            .type("FILE")
+                            .size(item.decodedSize()) // Для сжатых объектов — исходный размер, как при записи файла
+                            .etag(item.etag())
+                            .lastModified(item.lastModified())
+                            .build());
+                }
+                addParents(username, path, entries);
+            }
+        } catch (Exception e) {
+            throw new ValidationException("Failed to index resources of user: " + username); // Ошибка при построении индекса
+        }
+
+        resourceMetadataRepository.deletePlainByUser(username);
+        resourceMetadataRepository.saveAllAndFlush(entries.values());
+        resourceMetadataRepository.recalculateDirectoryTotals(username);
+        userStorageUsageRepository.recalculate(username);
+        eventPublisher.publishEvent(new ResourceMutationEvent(username, ResourcePaths.ROOT, true));
+        log.info("Индекс метаданных пользователя {} перестроен: {} записей", username, entries.size() + blobPaths.size());
+        return entries.size() + blobPaths.size();
+    }
+
+    // Папки, существующие в хранилище только как общий префикс ключей
+    private void addParents(String username, String path, Map<String, ResourceMetadata> entries) {
+        for (String parent = ResourcePaths.parentOf(path); !parent.isEmpty(); parent = ResourcePaths.parentOf(parent)) {
+            if (entries.putIfAbsent(parent, directoryEntry(username, parent)) != null) {
+                break;
+            }
+        }
+    }
+
+    private ResourceMetadata directoryEntry(String username, String path) {
+        return ResourceMetadata.builder()
+                .username(username)
+                .path(path)
+                .parentPath(ResourcePaths.parentOf(path))
+                .name(ResourcePaths.nameOf(path))
+                .type("DIRECTORY")
+                .totalSize(0L)
+                .fileCount(0L)
+                .build();
+    }
+
+    // Формирование префикса пользователя
+    private String getUserPrefix(String username) {
+        return "user-" + username + "-files/"; // Префикс в формате user-${username}-files/
+    }
+}
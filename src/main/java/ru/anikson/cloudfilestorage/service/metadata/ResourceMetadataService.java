@@ -0,0 +1,420 @@
+package ru.anikson.cloudfilestorage.service.metadata;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.anikson.cloudfilestorage.dao.ResourceMetadataRepository;
+import ru.anikson.cloudfilestorage.dao.UserStorageUsageRepository;
+import ru.anikson.cloudfilestorage.dto.resource.DirectoryPage;
+import ru.anikson.cloudfilestorage.dto.resource.DirectorySort;
+import ru.anikson.cloudfilestorage.dto.resource.ResourceSearchQuery;
+import ru.anikson.cloudfilestorage.dto.resource.StoredBlob;
+import ru.anikson.cloudfilestorage.entity.ResourceInfo;
+import ru.anikson.cloudfilestorage.entity.ResourceMetadata;
+import ru.anikson.cloudfilestorage.exception.NotFoundException;
+import ru.anikson.cloudfilestorage.exception.ValidationException;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+// Индекс метаданных файлов и папок в Postgres.
+// Листинги и информация о ресурсах читаются отсюда, а MinIO остаётся источником истины для содержимого.
+// Каждый путь записи сначала меняет MinIO, затем в одной транзакции обновляет индекс.
+// Чтения идут через двухуровневый кэш, который сбрасывается событиями после коммита.
+// Счётчики занятого места меняются в тех же транзакциях, что и записи индекса.
+// Так же поддерживаются итоги папок (размер и число файлов поддерева): каждая запись файла сдвигает их
+// у всех папок своего пути, поэтому размер папки читается одной записью, без обхода дерева.
+@Service
+@RequiredArgsConstructor
+public class ResourceMetadataService {
+
+    private static final int TREE_PAGE_SIZE = 1000; // Записей за один запрос при обходе дерева
+    private static final String FILE = "FILE";
+    private static final String DIRECTORY = "DIRECTORY";
+
+    private final ResourceMetadataRepository resourceMetadataRepository; // Индекс метаданных
+    private final ResourceIndexRebuildService resourceIndexRebuildService; // Построение индекса по MinIO
+    private final UserStorageUsageRepository userStorageUsageRepository; // Счётчики занятого места
+    private final MetadataCacheService metadataCacheService; // Кэш информации о ресурсах и листингов
+    private final ApplicationEventPublisher eventPublisher; // События изменения индекса (инвалидация кэшей)
+
+    // Содержимое папки: сначала папки, затем файлы, по имени
+    public List<ResourceInfo> getDirectoryContent(String username, String path) {
+        return metadataCacheService.getDirectoryPage(username, path, "all",
+                () -> new DirectoryPage(loadDirectoryContent(username, path), null)).items();
+    }
+
+    private List<ResourceInfo> loadDirectoryContent(String username, String path) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        String directoryPath = ResourcePaths.directory(path);
+        if (!resourceMetadataRepository.existsByUsernameAndPath(username, directoryPath)) {
+            throw new NotFoundException("Directory not found: " + path);
+        }
+        return resourceMetadataRepository.findChildren(username, directoryPath).stream()
+                .map(ResourceMetadataService::toListingEntry)
+                .toList();
+    }
+
+    // Страница содержимого папки; limit <= 0 — всё содержимое после курсора
+    public DirectoryPage getDirectoryPage(String username, String path, DirectorySort sort, Sort.Direction direction,
+                                          int limit, String cursor) {
+        String variant = String.join("|", sort.name(), direction.name(), String.valueOf(limit), cursor != null ? cursor : "");
+        return metadataCacheService.getDirectoryPage(username, path, variant,
+                () -> loadDirectoryPage(username, path, sort, direction, limit, cursor));
+    }
+
+    private DirectoryPage loadDirectoryPage(String username, String path, DirectorySort sort, Sort.Direction direction,
+                                            int limit, String cursor) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        String directoryPath = ResourcePaths.directory(path);
+        if (!resourceMetadataRepository.existsByUsernameAndPath(username, directoryPath)) {
+            throw new NotFoundException("Directory not found: " + path);
+        }
+
+        ResourceMetadata after = cursor != null && !cursor.isBlank() ? ListingCursor.decode(cursor) : null;
+        // Одна лишняя запись показывает, есть ли следующая страница
+        List<ResourceMetadata> found = resourceMetadataRepository.findChildrenAfter(username, directoryPath, sort, direction,
+                after, limit > 0 ? limit + 1 : 0);
+        boolean hasMore = limit > 0 && found.size() > limit;
+        List<ResourceMetadata> page = hasMore ? found.subList(0, limit) : found;
+
+        return new DirectoryPage(
+                page.stream().map(ResourceMetadataService::toListingEntry).toList(),
+                hasMore ? ListingCursor.encode(page.get(page.size() - 1)) : null);
+    }
+
+    // Информация о ресурсе; путь без "/" на конце, не найденный как файл, ищется как папка
+    public ResourceInfo getResourceInfo(String username, String path) {
+        return metadataCacheService.getResourceInfo(username, path, () -> findResource(username, path)
+                .map(ResourceMetadataService::toResourceInfo)
+                .orElseThrow(() -> new NotFoundException("Resource not found: " + path)));
+    }
+
+    // Поиск по индексу: время ответа не зависит от числа файлов пользователя
+    public List<ResourceInfo> search(String username, ResourceSearchQuery searchQuery) {
+        if (searchQuery.query() == null || searchQuery.query().isBlank()) {
+            throw new ValidationException("Search query must not be empty");
+        }
+        if (searchQuery.type() != null && !FILE.equals(searchQuery.type()) && !DIRECTORY.equals(searchQuery.type())) {
+            throw new ValidationException("Unknown resource type: " + searchQuery.type());
+        }
+        if (searchQuery.page() < 0 || searchQuery.size() <= 0) {
+            throw new ValidationException("Invalid page: " + searchQuery.page() + ", size: " + searchQuery.size());
+        }
+        resourceIndexRebuildService.ensureIndexed(username);
+
+        String query = ResourcePaths.escapeLike(searchQuery.query().trim());
+        Pageable pageable = PageRequest.of(searchQuery.page(), searchQuery.size());
+        List<ResourceMetadata> found = switch (searchQuery.mode()) {
+            case PREFIX -> resourceMetadataRepository.searchByName(username, query + "%",
+                    searchQuery.type(), searchQuery.minSize(), searchQuery.maxSize(), pageable);
+            case SUBSTRING -> resourceMetadataRepository.searchByName(username, "%" + query + "%",
+                    searchQuery.type(), searchQuery.minSize(), searchQuery.maxSize(), pageable);
+            case PATH -> resourceMetadataRepository.searchByPath(username, "%" + query + "%",
+                    searchQuery.type(), searchQuery.minSize(), searchQuery.maxSize(), pageable);
+        };
+        return found.stream()
+                .map(ResourceMetadataService::toResourceInfo)
+                .toList();
+    }
+
+    public boolean exists(String username, String path) {
+        return findResource(username, path).isPresent();
+    }
+
+    public boolean directoryExists(String username, String path) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        return resourceMetadataRepository.existsByUsernameAndPath(username, ResourcePaths.directory(path));
+    }
+
+    // Запись загруженного файла вместе с недостающими родительскими папками
+    @Transactional
+    public void recordFile(String username, String path, long size, String etag, ZonedDateTime lastModified) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        upsertFile(username, ResourcePaths.file(path), size, etag, lastModified, null);
+    }
+
+    // Запись файла из хранилища блобов: ссылка на блоб уже взята вызывающим
+    @Transactional
+    public void recordBlobFile(String username, String path, StoredBlob blob, ZonedDateTime lastModified) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        upsertFile(username, ResourcePaths.file(path), blob.size(), blob.digest(), lastModified, blob.digest());
+    }
+
+    // Блоб, в котором лежит содержимое файла (пусто для файлов под префиксом пользователя)
+    public Optional<String> findDigest(String username, String path) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        return resourceMetadataRepository.findByUsernameAndPath(username, ResourcePaths.file(path))
+                .map(ResourceMetadata::getDigest);
+    }
+
+    // Обход всех записей дерева папки в порядке путей, страницами, без загрузки дерева в память
+    public Iterator<ResourceMetadata> iterateTree(String username, String path) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        String pattern = ResourcePaths.descendantsPattern(ResourcePaths.directory(path));
+        return new Iterator<>() {
+            private Iterator<ResourceMetadata> page = Collections.emptyIterator();
+            private String after = "";
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                if (!page.hasNext() && !exhausted) {
+                    List<ResourceMetadata> next = resourceMetadataRepository.findTreePage(username, pattern, after, TREE_PAGE_SIZE);
+                    exhausted = next.size() < TREE_PAGE_SIZE;
+                    if (!next.isEmpty()) {
+                        after = next.get(next.size() - 1).getPath();
+                    }
+                    page = next.iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public ResourceMetadata next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+    }
+
+    // Запись созданной папки
+    @Transactional
+    public void recordDirectory(String username, String path) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        String directoryPath = ResourcePaths.directory(path);
+        if (directoryPath.isEmpty()) {
+            return;
+        }
+        createParents(username, directoryPath);
+        resourceMetadataRepository.insertDirectoryIfAbsent(username, directoryPath,
+                ResourcePaths.parentOf(directoryPath), ResourcePaths.nameOf(directoryPath));
+        eventPublisher.publishEvent(new ResourceMutationEvent(username, directoryPath, false));
+    }
+
+    // Удаление файла или папки со всем содержимым (корень при этом остаётся)
+    @Transactional
+    public void removeResource(String username, String path) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        if (!ResourcePaths.isDirectory(path)) {
+            deleteFileEntry(username, ResourcePaths.file(path));
+            eventPublisher.publishEvent(new ResourceMutationEvent(username, ResourcePaths.file(path), false));
+            return;
+        }
+        String directoryPath = ResourcePaths.directory(path);
+        String pattern = ResourcePaths.descendantsPattern(directoryPath);
+        releaseBlobs(resourceMetadataRepository.findTreeDigests(username, directoryPath, pattern));
+        userStorageUsageRepository.subtractTree(username, directoryPath, pattern);
+        addTreeToAncestors(username, directoryPath, pattern, directoryPath, -1);
+        resourceMetadataRepository.deleteTree(username, directoryPath, pattern);
+        if (directoryPath.isEmpty()) {
+            resourceMetadataRepository.insertDirectoryIfAbsent(username, ResourcePaths.ROOT, ResourcePaths.ROOT, ResourcePaths.ROOT);
+        }
+        eventPublisher.publishEvent(new ResourceMutationEvent(username, directoryPath, true));
+    }
+
+    // Перемещение файла: метаданные берутся из MinIO, запись по старому пути удаляется
+    @Transactional
+    public void moveFile(String username, String from, String to, long size, String etag, ZonedDateTime lastModified) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        deleteFileEntry(username, ResourcePaths.file(from));
+        eventPublisher.publishEvent(new ResourceMutationEvent(username, ResourcePaths.file(from), false));
+        upsertFile(username, ResourcePaths.file(to), size, etag, lastModified, null);
+    }
+
+    // Перемещение файла из хранилища блобов — только запись в индексе, байты в MinIO не трогаются.
+    // Пусто, если файл хранится под префиксом пользователя и его нужно перемещать в MinIO.
+    // Исходная запись читается под блокировкой: размер, переносимый между итогами папок, не устареет
+    // из-за параллельной перезаписи файла.
+    @Transactional
+    public Optional<ResourceInfo> moveBlobFile(String username, String from, String to) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        String fromPath = ResourcePaths.file(from);
+        String toPath = ResourcePaths.file(to);
+        Optional<ResourceMetadata> source = resourceMetadataRepository.findForUpdate(username, fromPath)
+                .filter(metadata -> metadata.getDigest() != null);
+        if (source.isEmpty()) {
+            return Optional.empty();
+        }
+
+        deleteFileEntry(username, toPath);
+        createParents(username, toPath);
+        resourceMetadataRepository.moveEntry(username, fromPath, toPath, ResourcePaths.parentOf(toPath), ResourcePaths.nameOf(toPath));
+        long size = sizeOf(source.get());
+        addToAncestors(username, fromPath, -size, -1);
+        addToAncestors(username, toPath, size, 1);
+        eventPublisher.publishEvent(new ResourceMutationEvent(username, fromPath, false));
+        eventPublisher.publishEvent(new ResourceMutationEvent(username, toPath, false));
+
+        ResourceMetadata moved = source.get();
+        moved.setPath(toPath);
+        moved.setParentPath(ResourcePaths.parentOf(toPath));
+        moved.setName(ResourcePaths.nameOf(toPath));
+        return Optional.of(toResourceInfo(moved));
+    }
+
+    // Перемещение папки: записи дерева переносятся одним UPDATE без повторного листинга.
+    // Если папка назначения уже есть, дерево сливается с ней (как и объекты в MinIO): её запись и вложенные папки
+    // остаются, совпадающие файлы заменяются, а итоги слитого дерева пересчитываются по его файлам.
+    @Transactional
+    public void moveDirectory(String username, String from, String to) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        String fromPath = ResourcePaths.directory(from);
+        String toPath = ResourcePaths.directory(to);
+        String pattern = ResourcePaths.descendantsPattern(fromPath);
+
+        releaseBlobs(resourceMetadataRepository.findMoveTargetDigests(username, fromPath, toPath, pattern));
+        userStorageUsageRepository.subtractMoveTargets(username, fromPath, toPath, pattern);
+        resourceMetadataRepository.subtractMoveTargetsFromDirectoryTotals(username, fromPath, toPath, pattern,
+                ResourcePaths.ancestorsOf(toPath));
+        resourceMetadataRepository.deleteMoveTargets(username, fromPath, toPath, pattern);
+        // Итоги самого дерева переезжают вместе с ним; меняются только папки выше старого и нового места
+        addTreeToAncestors(username, fromPath, pattern, fromPath, -1);
+        createParents(username, toPath);
+        addTreeToAncestors(username, fromPath, pattern, toPath, 1);
+        int mergedDirectories = resourceMetadataRepository.deleteMergedSourceDirectories(username, fromPath, toPath, pattern);
+        resourceMetadataRepository.moveDescendants(username, fromPath, toPath, pattern);
+        if (resourceMetadataRepository.moveEntry(username, fromPath, toPath,
+                ResourcePaths.parentOf(toPath), ResourcePaths.nameOf(toPath)) == 0) {
+            resourceMetadataRepository.insertDirectoryIfAbsent(username, toPath,
+                    ResourcePaths.parentOf(toPath), ResourcePaths.nameOf(toPath));
+        }
+        if (mergedDirectories > 0) {
+            // В слитых папках лежат и прежние файлы назначения, поэтому итоги перенесённого дерева им не подходят
+            resourceMetadataRepository.recalculateTreeDirectoryTotals(username, toPath, ResourcePaths.descendantsPattern(toPath));
+        }
+        eventPublisher.publishEvent(new ResourceMutationEvent(username, fromPath, true));
+        eventPublisher.publishEvent(new ResourceMutationEvent(username, toPath, true));
+    }
+
+    // Перестроение индекса пользователя, когда MinIO и индекс могли разойтись (частичные ошибки массовых операций)
+    @Transactional
+    public long rebuild(String username) {
+        return resourceIndexRebuildService.rebuild(username);
+    }
+
+    private Optional<ResourceMetadata> findResource(String username, String path) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        if (ResourcePaths.isDirectory(ResourcePaths.file(path))) {
+            return resourceMetadataRepository.findByUsernameAndPath(username, ResourcePaths.directory(path));
+        }
+        return resourceMetadataRepository.findByUsernameAndPath(username, ResourcePaths.file(path))
+                .or(() -> resourceMetadataRepository.findByUsernameAndPath(username, ResourcePaths.directory(path)));
+    }
+
+    // Запись файла; если по этому пути был файл из хранилища блобов, его ссылка освобождается.
+    // Перезапись файла меняет занятое место на разницу размеров.
+    // Прежняя запись читается под блокировкой строки, а новая вставляется только при отсутствии:
+    // из двух конкурентных записей одного пути вторая ждёт первую и считает разницу от её результата.
+    private void upsertFile(String username, String filePath, long size, String etag, ZonedDateTime lastModified, String digest) {
+        createParents(username, filePath);
+        long sizeDelta;
+        long fileDelta;
+        while (true) {
+            Optional<ResourceMetadata> previous = resourceMetadataRepository.findForUpdate(username, filePath);
+            if (previous.isPresent()) {
+                Optional.ofNullable(previous.get().getDigest())
+                        .ifPresent(previousDigest -> releaseBlobs(List.of(previousDigest)));
+                resourceMetadataRepository.updateFile(username, filePath, size, etag, lastModified, digest);
+                sizeDelta = size - sizeOf(previous.get());
+                fileDelta = 0;
+                break;
+            }
+            if (resourceMetadataRepository.insertFileIfAbsent(username, filePath, ResourcePaths.parentOf(filePath),
+                    ResourcePaths.nameOf(filePath), size, etag, lastModified, digest) > 0) {
+                sizeDelta = size;
+                fileDelta = 1;
+                break;
+            }
+            // Запись по этому пути только что вставила другая транзакция — перечитываем её под блокировкой
+        }
+        userStorageUsageRepository.add(username, sizeDelta, fileDelta);
+        addToAncestors(username, filePath, sizeDelta, fileDelta);
+        eventPublisher.publishEvent(new ResourceMutationEvent(username, filePath, false));
+    }
+
+    // Запись читается под блокировкой: конкурентная перезапись не изменит размер между чтением и удалением
+    private void deleteFileEntry(String username, String filePath) {
+        Optional<ResourceMetadata> existing = resourceMetadataRepository.findForUpdate(username, filePath);
+        existing.map(ResourceMetadata::getDigest)
+                .ifPresent(digest -> releaseBlobs(List.of(digest)));
+        // Счётчики уменьшает только та транзакция, которая действительно удалила запись
+        if (resourceMetadataRepository.deleteByPath(username, filePath) > 0 && existing.isPresent()) {
+            userStorageUsageRepository.add(username, -sizeOf(existing.get()), -1);
+            addToAncestors(username, filePath, -sizeOf(existing.get()), -1);
+        }
+    }
+
+    // Сдвиг итогов всех папок, в которых лежит ресурс
+    private void addToAncestors(String username, String path, long bytes, long files) {
+        List<String> ancestors = ResourcePaths.ancestorsOf(path);
+        if (!ancestors.isEmpty() && (bytes != 0 || files != 0)) {
+            resourceMetadataRepository.addToDirectoryTotals(username, ancestors, bytes, files);
+        }
+    }
+
+    // Сдвиг итогов папок над path на все файлы дерева treePath (sign = -1 — вычитание)
+    private void addTreeToAncestors(String username, String treePath, String pattern, String path, int sign) {
+        List<String> ancestors = ResourcePaths.ancestorsOf(path);
+        if (!ancestors.isEmpty()) {
+            resourceMetadataRepository.addTreeToDirectoryTotals(username, treePath, pattern, ancestors, sign);
+        }
+    }
+
+    private long sizeOf(ResourceMetadata metadata) {
+        return metadata.getSize() != null ? metadata.getSize() : 0L;
+    }
+
+    // Ссылки снимаются после коммита: откат транзакции не должен оставить записи без содержимого
+    private void releaseBlobs(List<String> digests) {
+        if (!digests.isEmpty()) {
+            eventPublisher.publishEvent(new BlobReleaseEvent(digests));
+        }
+    }
+
+    // Недостающие родительские папки; если папка уже есть, есть и все её предки
+    private void createParents(String username, String path) {
+        for (String parent = ResourcePaths.parentOf(path); !parent.isEmpty(); parent = ResourcePaths.parentOf(parent)) {
+            if (resourceMetadataRepository.existsByUsernameAndPath(username, parent)) {
+                return;
+            }
+            resourceMetadataRepository.insertDirectoryIfAbsent(username, parent,
+                    ResourcePaths.parentOf(parent), ResourcePaths.nameOf(parent));
+        }
+    }
+
+    // Сведения об одном ресурсе (информация, поиск, перемещение) в прежнем формате API:
+    // родитель ресурса в корне — "/", имя папки без "/" на конце
+    static ResourceInfo toResourceInfo(ResourceMetadata metadata) {
+        boolean directory = DIRECTORY.equals(metadata.getType());
+        return ResourceInfo.builder()
+                .path(metadata.getParentPath().isEmpty() ? "/" : metadata.getParentPath()) // Путь к родительской папке
+                .name(metadata.getName()) // Имя файла или папки
+                .size(directory ? metadata.getTotalSize() : metadata.getSize()) // Размер файла или всего содержимого папки
+                .type(metadata.getType()) // Тип ресурса
+                .fileCount(directory ? metadata.getFileCount() : null) // Число файлов в папке со всеми вложенными
+                .build();
+    }
+
+    // Элемент листинга папки в прежнем формате API: путь — сама папка ("" для корня), у вложенных папок "/" на конце имени
+    static ResourceInfo toListingEntry(ResourceMetadata metadata) {
+        boolean directory = DIRECTORY.equals(metadata.getType());
+        return ResourceInfo.builder()
+                .path(metadata.getParentPath()) // Путь к папке
+                .name(directory ? metadata.getName() + "/" : metadata.getName()) // Имя файла или папки ("/" на конце у папок)
+                .size(directory ? metadata.getTotalSize() : metadata.getSize()) // Размер файла или всего содержимого папки
+                .type(metadata.getType()) // Тип ресурса
+                .fileCount(directory ? metadata.getFileCount() : null) // Число файлов в папке со всеми вложенными
+                .build();
+    }
+}
@@ -0,0 +1,10 @@
+package ru.anikson.cloudfilestorage.service.metadata;
+
+// Изменение ресурса пользователя в индексе метаданных.
+// path — канонический путь; tree — затронуто всё поддерево папки (удаление, перемещение, перестроение).
+public record ResourceMutationEvent(
+        String username,
+        String path,
+        boolean tree
+) {
+}
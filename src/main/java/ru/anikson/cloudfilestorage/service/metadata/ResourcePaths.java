@@ -0,0 +1,93 @@
+package ru.anikson.cloudfilestorage.service.metadata;
+
+import ru.anikson.cloudfilestorage.exception.ValidationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Канонические пути индекса метаданных: без ведущего "/", корень пользователя — "",
+// папки оканчиваются на "/", файлы — нет.
+public final class ResourcePaths {
+
+    public static final String ROOT = "";
+
+    private ResourcePaths() {
+    }
+
+    // Путь папки в каноническом виде
+    public static String directory(String path) {
+        String normalized = stripLeadingSlashes(path);
+        return normalized.isEmpty() || normalized.endsWith("/") ? normalized : normalized + "/";
+    }
+
+    // Путь файла в каноническом виде
+    public static String file(String path) {
+        return stripLeadingSlashes(path);
+    }
+
+    public static boolean isDirectory(String path) {
+        return path.isEmpty() || path.endsWith("/");
+    }
+
+    // Родительская папка ("" для ресурсов в корне)
+    public static String parentOf(String path) {
+        String trimmed = trimTrailingSlash(path);
+        int lastSlashIndex = trimmed.lastIndexOf('/');
+        return lastSlashIndex >= 0 ? trimmed.substring(0, lastSlashIndex + 1) : ROOT;
+    }
+
+    // Все папки, в которых лежит ресурс: от родительской до корня включительно (у корня их нет)
+    public static List<String> ancestorsOf(String path) {
+        List<String> ancestors = new ArrayList<>();
+        if (path.isEmpty()) {
+            return ancestors;
+        }
+        for (String parent = parentOf(path); ; parent = parentOf(parent)) {
+            ancestors.add(parent);
+            if (parent.isEmpty()) {
+                return ancestors;
+            }
+        }
+    }
+
+    // Проверка пути от клиента: сегменты "." и ".." запрещены, иначе ключ объекта мог бы выйти из папки пользователя
+    public static String requireSafe(String path) {
+        if (path == null) {
+            throw new ValidationException("Path must not be null");
+        }
+        for (String segment : path.split("/", -1)) {
+            if (segment.equals(".") || segment.equals("..")) {
+                throw new ValidationException("Invalid path: " + path);
+            }
+        }
+        return path;
+    }
+
+    // Имя файла или папки без завершающего "/"
+    public static String nameOf(String path) {
+        String trimmed = trimTrailingSlash(path);
+        return trimmed.substring(trimmed.lastIndexOf('/') + 1);
+    }
+
+    // Шаблон LIKE для всего, что лежит под папкой (спецсимволы LIKE экранируются)
+    public static String descendantsPattern(String directoryPath) {
+        return escapeLike(directoryPath) + "%";
+    }
+
+    // Экранирование спецсимволов LIKE ("\" — символ экранирования в запросах индекса)
+    public static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String stripLeadingSlashes(String path) {
+        int start = 0;
+        while (start < path.length() && path.charAt(start) == '/') {
+            start++;
+        }
+        return path.substring(start);
+    }
+
+    private static String trimTrailingSlash(String path) {
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+}
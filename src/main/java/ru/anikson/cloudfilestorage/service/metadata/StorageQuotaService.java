@@ -0,0 +1,173 @@
+package ru.anikson.cloudfilestorage.service.metadata;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.anikson.cloudfilestorage.dao.StorageReservationRepository;
+import ru.anikson.cloudfilestorage.dao.UserRepository;
+import ru.anikson.cloudfilestorage.dao.UserStorageUsageRepository;
+import ru.anikson.cloudfilestorage.dto.user.StorageUsageResponse;
+import ru.anikson.cloudfilestorage.dto.user.UsageRebuildResponse;
+import ru.anikson.cloudfilestorage.entity.UserStorageUsage;
+import ru.anikson.cloudfilestorage.exception.QuotaExceededException;
+import ru.anikson.cloudfilestorage.exception.ValidationException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Квоты пользователей.
+// Занятое место хранится готовыми счётчиками, поэтому решение о допуске загрузки — чтение одной строки.
+// Загрузка резервирует место под строкой счётчиков, так что параллельные загрузки не проходят проверку вместе.
+// Пересчёт счётчиков (по листингу хранилища через перестроение индекса) запускается администратором в фоне.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StorageQuotaService {
+
+    private final UserStorageUsageRepository userStorageUsageRepository; // Счётчики занятого места
+    private final StorageReservationRepository storageReservationRepository; // Резервы идущих загрузок
+    private final UserRepository userRepository; // Пользователи (для пересчёта)
+    private final ResourceIndexRebuildService resourceIndexRebuildService; // Построение индекса по хранилищу
+    @Qualifier("minioTaskExecutor")
+    private final Executor minioTaskExecutor; // Пул для параллельных обращений к MinIO
+
+    private final SimpleAsyncTaskExecutor rebuildExecutor = new SimpleAsyncTaskExecutor("usage-rebuild-");
+    private final AtomicBoolean rebuildRunning = new AtomicBoolean();
+
+    @Value("${storage.quota.default-bytes}")
+    private long quotaBytes; // 0 — без ограничения
+
+    @Value("${storage.quota.reservation-ttl}")
+    private Duration reservationTtl; // Через сколько резерв незавершённой загрузки перестаёт учитываться
+
+    @Value("${storage.usage.rebuild-parallelism}")
+    private int rebuildParallelism; // Сколько пользователей пересчитывается одновременно
+
+    @Value("${admin.usernames}")
+    private Set<String> adminUsernames;
+
+    public StorageUsageResponse getUsage(String username) {
+        resourceIndexRebuildService.ensureIndexed(username);
+        UserStorageUsage usage = userStorageUsageRepository.findById(username)
+                .orElseGet(() -> new UserStorageUsage(username, 0L, 0L));
+        return new StorageUsageResponse(usage.getUsedBytes(), usage.getObjectCount(), quotaBytes > 0 ? quotaBytes : null);
+    }
+
+    // Быстрая проверка квоты до приёма тела запроса (с учётом активных резервов); место не резервирует
+    public void checkQuota(String username, long incomingBytes) {
+        if (quotaBytes <= 0) {
+            return;
+        }
+        long usedBytes = getUsage(username).usedBytes()
+                + storageReservationRepository.sumActive(username, Instant.now());
+        if (incomingBytes > quotaBytes - usedBytes) {
+            throw quotaExceeded(username, usedBytes, incomingBytes);
+        }
+    }
+
+    // Резерв места до начала передачи содержимого в хранилище.
+    // Строка счётчиков блокируется, и резерв вставляется отдельным запросом, который видит все
+    // зафиксированные до этого резервы и загрузки — сравнение и резервирование атомарны для пользователя.
+    @Transactional
+    public QuotaReservation reserve(String username, long incomingBytes) {
+        if (quotaBytes <= 0 || incomingBytes <= 0) {
+            return QuotaReservation.NONE;
+        }
+        resourceIndexRebuildService.ensureIndexed(username);
+        Instant now = Instant.now();
+        storageReservationRepository.lockUsage(username);
+        storageReservationRepository.deleteExpired(username, now);
+
+        UUID id = UUID.randomUUID();
+        if (storageReservationRepository.insertWithinQuota(id, username, incomingBytes, now.plus(reservationTtl), quotaBytes) == 0) {
+            long usedBytes = userStorageUsageRepository.findById(username).map(UserStorageUsage::getUsedBytes).orElse(0L)
+                    + storageReservationRepository.sumActive(username, now);
+            throw quotaExceeded(username, usedBytes, incomingBytes);
+        }
+        return new QuotaReservation(id, storageReservationRepository::release);
+    }
+
+    // Продление резерва долгой загрузки (загрузка по частям)
+    public void extend(UUID reservationId, Duration ttl) {
+        if (reservationId != null) {
+            storageReservationRepository.extend(reservationId, Instant.now().plus(ttl));
+        }
+    }
+
+    public void release(UUID reservationId) {
+        if (reservationId != null) {
+            storageReservationRepository.release(reservationId);
+        }
+    }
+
+    private QuotaExceededException quotaExceeded(String username, long usedBytes, long incomingBytes) {
+        log.warn("Квота пользователя {} превышена: занято {}, загружается {}, квота {}", username, usedBytes, incomingBytes, quotaBytes);
+        return new QuotaExceededException("Storage quota exceeded: used " + usedBytes + " of " + quotaBytes
+                + " bytes, upload needs " + incomingBytes);
+    }
+
+    // Запуск пересчёта счётчиков всех пользователей; ответ возвращается сразу, пересчёт идёт в фоне
+    public UsageRebuildResponse rebuildUsage(String requestedBy) {
+        if (!adminUsernames.contains(requestedBy)) {
+            throw new AccessDeniedException("Administrator access required");
+        }
+        if (!rebuildRunning.compareAndSet(false, true)) {
+            throw new ValidationException("Storage usage rebuild is already running");
+        }
+
+        List<String> usernames;
+        try {
+            usernames = userRepository.findAllUsernames();
+            rebuildExecutor.execute(() -> {
+                try {
+                    rebuildAll(usernames);
+                } finally {
+                    rebuildRunning.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            rebuildRunning.set(false);
+            throw e;
+        }
+        log.info("Пользователь {} запустил пересчёт занятого места для {} пользователей", requestedBy, usernames.size());
+        return new UsageRebuildResponse(usernames.size());
+    }
+
+    // Пользователи обрабатываются параллельно, но не больше rebuildParallelism одновременно
+    private void rebuildAll(List<String> usernames) {
+        Semaphore permits = new Semaphore(rebuildParallelism);
+        AtomicInteger failed = new AtomicInteger();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(usernames.size());
+
+        for (String username : usernames) {
+            permits.acquireUninterruptibly();
+            tasks.add(CompletableFuture.runAsync(() -> rebuildUser(username, failed), minioTaskExecutor)
+                    .whenComplete((result, e) -> permits.release()));
+        }
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+        log.info("Пересчёт занятого места завершён: {} пользователей, ошибок {}", usernames.size(), failed.get());
+    }
+
+    private void rebuildUser(String username, AtomicInteger failed) {
+        try {
+            resourceIndexRebuildService.rebuild(username);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            log.warn("Не удалось пересчитать занятое место пользователя {}: {}", username, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ru.anikson.cloudfilestorage.service.minio;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import ru.anikson.cloudfilestorage.dao.BlobRepository;
+import ru.anikson.cloudfilestorage.dto.resource.StoredBlob;
+import ru.anikson.cloudfilestorage.exception.ValidationException;
+import ru.anikson.cloudfilestorage.service.metadata.BlobReleaseEvent;
+import ru.anikson.cloudfilestorage.service.storage.CompressionService;
+import ru.anikson.cloudfilestorage.service.storage.StorageBackend;
+import ru.anikson.cloudfilestorage.service.transfer.TransferPermit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Хранилище с адресацией по содержимому (включается storage.dedup.enabled).
+// Содержимое хранится один раз под blobs/sha256/<digest>, файлы пользователей ссылаются на него из индекса
+// метаданных, поэтому повторная загрузка, перемещение и переименование не трогают байты в хранилище.
+// Блоб удаляется, когда на него не остаётся ссылок: строка blobs удаляется и объект стирается в одной
+// транзакции, а параллельная загрузка того же содержимого ждёт блокировку строки и загружает его заново.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BlobStoreService {
+
+    private static final String BLOB_PREFIX = "blobs/sha256/";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final StorageBackend storageBackend; // Хранилище содержимого файлов
+    private final CompressionService compressionService; // Прозрачное сжатие объектов
+    private final BlobRepository blobRepository; // Счётчики ссылок на блобы
+    private final PlatformTransactionManager transactionManager; // Транзакции освобождения блобов
+
+    @Value("${storage.dedup.enabled}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Ключ блоба в бакете
+    public String objectName(String digest) {
+        return BLOB_PREFIX + digest.substring(0, 2) + "/" + digest;
+    }
+
+    // Сохранение файла: сначала считается хэш локальной копии, и если такое содержимое уже есть,
+    // в хранилище ничего не передаётся. Возвращает блоб, на который взята одна ссылка.
+    public StoredBlob store(MultipartFile file) {
+        return store(file, TransferPermit.UNLIMITED);
+    }
+
+    // Загрузка с ограничением скорости передачи пользователя (дубликат не передаётся и токенов не тратит)
+    public StoredBlob store(MultipartFile file, TransferPermit transferPermit) {
+        String digest = digest(file);
+        if (blobRepository.acquireExisting(digest) > 0) {
+            log.debug("Блоб {} уже есть, загрузка пропущена", digest);
+            return new StoredBlob(digest, file.getSize());
+        }
+
+        try (InputStream stream = transferPermit.throttle(file.getInputStream())) {
+            compressionService.put(objectName(digest), stream, file.getSize(), file.getContentType());
+        } catch (Exception e) {
+            throw new ValidationException("Failed to store file: " + file.getOriginalFilename()); // Ошибка при загрузке
+        }
+        blobRepository.insertOrAcquire(digest, file.getSize());
+        return new StoredBlob(digest, file.getSize());
+    }
+
+    // Освобождение ссылок после коммита изменений индекса
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBlobRelease(BlobReleaseEvent event) {
+        Map<String, Long> counts = event.digests().stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        counts.forEach((digest, count) -> {
+            try {
+                release(digest, count);
+            } catch (RuntimeException e) {
+                log.error("Ошибка при освобождении блоба {}: {}", digest, e.getMessage()); // Блоб останется лишним, но не потеряется
+            }
+        });
+    }
+
+    // Снятие одной ссылки (например, если файл не удалось записать в индекс)
+    public void release(String digest) {
+        release(digest, 1);
+    }
+
+    // Снятие ссылок в отдельной транзакции; блоб без ссылок удаляется из хранилища до коммита, пока строка заблокирована
+    private void release(String digest, long count) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.executeWithoutResult(status -> {
+            blobRepository.release(digest, count);
+            if (blobRepository.deleteUnreferenced(digest) == 0) {
+                return;
+            }
+            try {
+                storageBackend.delete(objectName(digest));
+                log.debug("Блоб {} удалён: ссылок не осталось", digest);
+            } catch (Exception e) {
+                throw new ValidationException("Failed to delete blob: " + digest); // Откат: строка блоба вернётся
+            }
+        });
+    }
+
+    private String digest(MultipartFile file) {
+        try (InputStream stream = file.getInputStream()) {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[HASH_BUFFER_SIZE];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                sha256.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(sha256.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new ValidationException("Failed to read file: " + file.getOriginalFilename()); // Ошибка при чтении файла
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.anikson.cloudfilestorage.service.minio;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.anikson.cloudfilestorage.dto.resource.DeleteResult;
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
+import ru.anikson.cloudfilestorage.exception.ValidationException;
+import ru.anikson.cloudfilestorage.service.storage.StorageBackend;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Массовое удаление объектов пачками через multi-object delete (до 1000 ключей за запрос).
+// Листинг и удаление идут конвейером: пока пул удаляет очередные пачки, поток запроса читает следующую страницу листинга.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkDeleteService {
+
+    private static final int MAX_BATCH_SIZE = StorageBackend.MAX_DELETE_BATCH;
+
+    private final StorageBackend storageBackend; // Хранилище содержимого файлов
+    @Qualifier("minioTaskExecutor")
+    private final Executor minioTaskExecutor; // Пул для параллельных обращений к MinIO
+
+    @Value("${minio.delete.parallel-batches}")
+    private int parallelBatches; // Сколько пачек одного запроса удаляются одновременно
+
+    // Удаление всех объектов под префиксом (включая маркер самой папки)
+    public DeleteResult deletePrefix(String prefix) {
+        Iterator<StorageObject> objects = storageBackend.list(prefix, null); // Все объекты под префиксом
+
+        Iterator<String> objectNames = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return objects.hasNext();
+            }
+
+            @Override
+            public String next() {
+                try {
+                    return objects.next().name();
+                } catch (Exception e) {
+                    throw new ValidationException("Failed to list objects: " + prefix); // Ошибка при получении списка объектов
+                }
+            }
+        };
+        DeleteResult result = deleteObjects(objectNames);
+        log.info("Удаление префикса {}: удалено {}, ошибок {}", prefix, result.deleted(), result.failed());
+        return result;
+    }
+
+    // Удаление объектов по списку полных имён
+    public DeleteResult deleteObjects(Iterator<String> objectNames) {
+        AtomicLong deleted = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        Semaphore permits = new Semaphore(parallelBatches);
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+
+        try {
+            List<String> batch = new ArrayList<>(MAX_BATCH_SIZE);
+            while (objectNames.hasNext()) {
+                batch.add(objectNames.next());
+                if (batch.size() == MAX_BATCH_SIZE) {
+                    batches.add(submitBatch(batch, permits, deleted, failed));
+                    batch = new ArrayList<>(MAX_BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.add(submitBatch(batch, permits, deleted, failed));
+            }
+        } finally {
+            // Даже при ошибке листинга дожидаемся уже отправленных пачек, чтобы счётчики были точными
+            CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).join();
+        }
+        return new DeleteResult(deleted.get(), failed.get());
+    }
+
+    private CompletableFuture<Void> submitBatch(List<String> batch, Semaphore permits, AtomicLong deleted, AtomicLong failed) {
+        permits.acquireUninterruptibly(); // Ограничиваем число пачек в полёте — обратное давление на листинг
+        return CompletableFuture.runAsync(() -> deleteBatch(batch, deleted, failed), minioTaskExecutor)
+                .whenComplete((result, e) -> permits.release());
+    }
+
+    private void deleteBatch(List<String> batch, AtomicLong deleted, AtomicLong failed) {
+        long errors;
+        try {
+            errors = storageBackend.deleteAll(batch).size(); // Ключи, которые удалить не удалось, уже залогированы
+        } catch (Exception e) {
+            log.error("Ошибка при удалении пачки из {} объектов: {}", batch.size(), e.getMessage());
+            errors = batch.size();
+        }
+        deleted.addAndGet(batch.size() - errors);
+        failed.addAndGet(errors);
+    }
+}
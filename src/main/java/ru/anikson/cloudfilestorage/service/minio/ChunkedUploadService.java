@@ -0,0 +1,275 @@
+package ru.anikson.cloudfilestorage.service.minio;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import ru.anikson.cloudfilestorage.dto.resource.UploadSessionResponse;
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
+import ru.anikson.cloudfilestorage.dto.storage.UploadedPart;
+import ru.anikson.cloudfilestorage.entity.ResourceInfo;
+import ru.anikson.cloudfilestorage.exception.NotFoundException;
+import ru.anikson.cloudfilestorage.exception.TooManyRequestsException;
+import ru.anikson.cloudfilestorage.exception.ValidationException;
+import ru.anikson.cloudfilestorage.service.metadata.QuotaReservation;
+import ru.anikson.cloudfilestorage.service.metadata.ResourceMetadataService;
+import ru.anikson.cloudfilestorage.service.metadata.ResourcePaths;
+import ru.anikson.cloudfilestorage.service.metadata.StorageQuotaService;
+import ru.anikson.cloudfilestorage.service.storage.StorageBackend;
+import ru.anikson.cloudfilestorage.service.transfer.TransferDirection;
+import ru.anikson.cloudfilestorage.service.transfer.TransferLimitService;
+import ru.anikson.cloudfilestorage.service.transfer.TransferPermit;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Возобновляемая загрузка больших файлов по частям.
+// Каждая часть (chunk N) напрямую становится частью N+1 multipart-загрузки в хранилище,
+// а состояние сессии хранится в Redis, поэтому части можно слать параллельно и с любого узла.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkedUploadService {
+
+    private static final String SESSION_KEY_PREFIX = "upload-session:";
+    private static final String PARTS_KEY_SUFFIX = ":parts";
+    private static final long MIN_CHUNK_SIZE = 5L * 1024 * 1024; // Минимальный размер части S3 (кроме последней)
+    private static final int MAX_PARTS = 10_000; // Максимум частей в одной multipart-загрузке S3
+
+    private final StorageBackend storageBackend; // Хранилище содержимого файлов
+    private final StringRedisTemplate redisTemplate; // Хранилище состояния сессий
+    private final ResourceMetadataService resourceMetadataService; // Индекс метаданных ресурсов
+    private final StorageQuotaService storageQuotaService; // Квоты пользователей
+    private final TransferLimitService transferLimitService; // Ограничение скорости и числа передач пользователя
+
+    @Value("${minio.upload.default-chunk-size}")
+    private long defaultChunkSize;
+
+    @Value("${minio.upload.max-chunk-size}")
+    private long maxChunkSize;
+
+    @Value("${minio.upload.session-ttl}")
+    private Duration sessionTtl;
+
+    // Создание сессии загрузки
+    public UploadSessionResponse createSession(String username, String path, String name, long size, Long requestedChunkSize) {
+        if (size <= 0) {
+            throw new ValidationException("File size must be positive: " + size);
+        }
+        if (name == null || name.isBlank() || name.contains("..")) {
+            throw new ValidationException("Invalid file name: " + name);
+        }
+        String directoryPath = ResourcePaths.directory(ResourcePaths.requireSafe(path)); // Ключ объекта и сессия — с каноническим путём папки
+
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(requestedChunkSize != null ? requestedChunkSize : defaultChunkSize, maxChunkSize));
+        if (ceilDiv(size, chunkSize) > MAX_PARTS) {
+            chunkSize = ceilDiv(size, MAX_PARTS); // Увеличиваем часть, чтобы уложиться в лимит S3
+            if (chunkSize > maxChunkSize) {
+                throw new ValidationException("File is too large for chunked upload: " + size);
+            }
+        }
+
+        // Размер файла известен заранее — место резервируется до первой части и держится, пока жива сессия
+        QuotaReservation reservation = storageQuotaService.reserve(username, size);
+
+        String objectName = getUserPrefix(username) + directoryPath + name;
+        String uploadId;
+        try {
+            uploadId = storageBackend.createMultipartUpload(objectName);
+        } catch (Exception e) {
+            reservation.close();
+            throw new ValidationException("Failed to start upload: " + name); // Ошибка при создании multipart-загрузки
+        }
+
+        String sessionId = UUID.randomUUID().toString();
+        Map<String, String> session = new HashMap<>();
+        session.put("username", username);
+        session.put("path", directoryPath);
+        session.put("name", name);
+        session.put("objectName", objectName);
+        session.put("uploadId", uploadId);
+        session.put("size", String.valueOf(size));
+        session.put("chunkSize", String.valueOf(chunkSize));
+        if (reservation.id() != null) {
+            session.put("reservationId", reservation.id().toString());
+        }
+        redisTemplate.opsForHash().putAll(sessionKey(sessionId), session);
+        redisTemplate.expire(sessionKey(sessionId), sessionTtl);
+
+        log.info("Создана сессия загрузки {} файла {} ({} байт) для пользователя {}", sessionId, objectName, size, username);
+        return toResponse(sessionId, new UploadSession(session), Map.of());
+    }
+
+    // Загрузка части с номером index (нумерация с нуля)
+    public UploadSessionResponse uploadChunk(String username, String sessionId, int index, InputStream data, long length) {
+        UploadSession session = getSession(username, sessionId);
+        if (index < 0 || index >= session.totalChunks()) {
+            throw new ValidationException("Chunk index out of range: " + index);
+        }
+        long expectedLength = session.chunkLength(index);
+        if (length != expectedLength) {
+            throw new ValidationException("Chunk " + index + " must be exactly " + expectedLength + " bytes, got " + length);
+        }
+
+        String etag;
+        // Часть читается прямо из тела запроса, поэтому ограничение скорости замедляет и сам приём
+        try (TransferPermit transferPermit = transferLimitService.acquire(username, TransferDirection.UPLOAD)) {
+            etag = storageBackend.uploadPart(session.objectName(), session.uploadId(), index + 1, transferPermit.throttle(data), length);
+        } catch (TooManyRequestsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ValidationException("Failed to upload chunk " + index + " of session " + sessionId); // Ошибка при загрузке части
+        }
+
+        redisTemplate.opsForHash().put(partsKey(sessionId), String.valueOf(index), etag);
+        redisTemplate.expire(partsKey(sessionId), sessionTtl);
+        redisTemplate.expire(sessionKey(sessionId), sessionTtl); // Активная сессия продлевается
+        storageQuotaService.extend(session.reservationId(), sessionTtl); // Вместе с резервом места
+        return toResponse(sessionId, session, getReceivedParts(sessionId));
+    }
+
+    // Состояние сессии: какие части уже получены
+    public UploadSessionResponse getStatus(String username, String sessionId) {
+        UploadSession session = getSession(username, sessionId);
+        return toResponse(sessionId, session, getReceivedParts(sessionId));
+    }
+
+    // Завершение загрузки: хранилище собирает объект из частей
+    public ResourceInfo complete(String username, String sessionId) {
+        UploadSession session = getSession(username, sessionId);
+
+        StorageObject stored;
+        try {
+            // Источник истины по частям — само хранилище, Redis нужен только для быстрых ответов о прогрессе
+            List<UploadedPart> parts = storageBackend.listParts(session.objectName(), session.uploadId()).stream()
+                    .sorted(Comparator.comparingInt(UploadedPart::partNumber))
+                    .toList();
+            if (parts.size() != session.totalChunks()) {
+                throw new ValidationException("Upload is incomplete: received " + parts.size() + " of " + session.totalChunks() + " chunks");
+            }
+
+            stored = storageBackend.completeMultipartUpload(session.objectName(), session.uploadId(), parts);
+        } catch (ValidationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ValidationException("Failed to complete upload: " + session.name()); // Ошибка при сборке объекта
+        }
+
+        resourceMetadataService.recordFile(username, session.path() + session.name(), session.size(),
+                stored.etag(), stored.lastModified());
+        storageQuotaService.release(session.reservationId()); // Файл учтён в счётчиках — резерв больше не нужен
+        redisTemplate.delete(List.of(sessionKey(sessionId), partsKey(sessionId)));
+        log.info("Загрузка {} завершена: {} для пользователя {}", sessionId, session.objectName(), username);
+
+        return ResourceInfo.builder()
+                .path(session.path()) // Путь к папке
+                .name(session.name()) // Имя файла
+                .size(session.size()) // Размер файла
+                .type("FILE") // Тип ресурса
+                .build();
+    }
+
+    // Отмена загрузки: уже принятые части удаляются из хранилища
+    public void abort(String username, String sessionId) {
+        UploadSession session = getSession(username, sessionId);
+        try {
+            storageBackend.abortMultipartUpload(session.objectName(), session.uploadId());
+        } catch (Exception e) {
+            throw new ValidationException("Failed to abort upload: " + sessionId); // Ошибка при отмене загрузки
+        }
+        storageQuotaService.release(session.reservationId());
+        redisTemplate.delete(List.of(sessionKey(sessionId), partsKey(sessionId)));
+        log.info("Загрузка {} отменена пользователем {}", sessionId, username);
+    }
+
+    private UploadSession getSession(String username, String sessionId) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(sessionKey(sessionId));
+        // Чужая сессия для пользователя неотличима от несуществующей
+        if (entries.isEmpty() || !username.equals(entries.get("username"))) {
+            throw new NotFoundException("Upload session not found: " + sessionId);
+        }
+        Map<String, String> session = new HashMap<>();
+        entries.forEach((key, value) -> session.put((String) key, (String) value));
+        return new UploadSession(session);
+    }
+
+    private Map<Object, Object> getReceivedParts(String sessionId) {
+        return redisTemplate.opsForHash().entries(partsKey(sessionId));
+    }
+
+    private UploadSessionResponse toResponse(String sessionId, UploadSession session, Map<Object, Object> receivedParts) {
+        List<Integer> received = receivedParts.keySet().stream()
+                .map(key -> Integer.parseInt((String) key))
+                .sorted()
+                .toList();
+        long receivedBytes = received.stream().mapToLong(session::chunkLength).sum();
+        return new UploadSessionResponse(sessionId, session.path(), session.name(), session.size(),
+                session.chunkSize(), session.totalChunks(), received, receivedBytes);
+    }
+
+    private String sessionKey(String sessionId) {
+        return SESSION_KEY_PREFIX + sessionId;
+    }
+
+    private String partsKey(String sessionId) {
+        return SESSION_KEY_PREFIX + sessionId + PARTS_KEY_SUFFIX;
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    // Формирование префикса пользователя
+    private String getUserPrefix(String username) {
+        return "user-" + username + "-files/"; // Префикс в формате user-${username}-files/
+    }
+
+    // Поля сессии из Redis
+    private record UploadSession(Map<String, String> fields) {
+
+        String path() {
+            return fields.get("path");
+        }
+
+        String name() {
+            return fields.get("name");
+        }
+
+        String objectName() {
+            return fields.get("objectName");
+        }
+
+        String uploadId() {
+            return fields.get("uploadId");
+        }
+
+        long size() {
+            return Long.parseLong(fields.get("size"));
+        }
+
+        long chunkSize() {
+            return Long.parseLong(fields.get("chunkSize"));
+        }
+
+        // Резерв места под файл; null — квота не ограничена
+        UUID reservationId() {
+            String id = fields.get("reservationId");
+            return id != null ? UUID.fromString(id) : null;
+        }
+
+        int totalChunks() {
+            return (int) ceilDiv(size(), chunkSize());
+        }
+
+        // Размер части: все части одинаковые, кроме последней
+        long chunkLength(int index) {
+            return Math.min(chunkSize(), size() - (long) index * chunkSize());
+        }
+    }
+}
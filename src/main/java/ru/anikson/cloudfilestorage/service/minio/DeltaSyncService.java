@@ -0,0 +1,402 @@
+package ru.anikson.cloudfilestorage.service.minio;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.anikson.cloudfilestorage.dto.resource.BlockSignature;
+import ru.anikson.cloudfilestorage.dto.resource.DeltaInstruction;
+import ru.anikson.cloudfilestorage.dto.resource.DeltaOperation;
+import ru.anikson.cloudfilestorage.dto.resource.FileSignature;
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
+import ru.anikson.cloudfilestorage.dto.storage.UploadedPart;
+import ru.anikson.cloudfilestorage.entity.ResourceInfo;
+import ru.anikson.cloudfilestorage.exception.NotFoundException;
+import ru.anikson.cloudfilestorage.exception.PreconditionFailedException;
+import ru.anikson.cloudfilestorage.exception.TooManyRequestsException;
+import ru.anikson.cloudfilestorage.exception.ValidationException;
+import ru.anikson.cloudfilestorage.service.metadata.QuotaReservation;
+import ru.anikson.cloudfilestorage.service.metadata.ResourceMetadataService;
+import ru.anikson.cloudfilestorage.service.metadata.ResourcePaths;
+import ru.anikson.cloudfilestorage.service.metadata.StorageQuotaService;
+import ru.anikson.cloudfilestorage.service.storage.StorageBackend;
+import ru.anikson.cloudfilestorage.service.transfer.TransferDirection;
+import ru.anikson.cloudfilestorage.service.transfer.TransferLimitService;
+import ru.anikson.cloudfilestorage.service.transfer.TransferPermit;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+
+// Дельта-обновление больших файлов по схеме rsync.
+// Клиент получает сигнатуру текущей версии (контрольные суммы блоков), сам находит у себя совпадающие блоки
+// и присылает список инструкций: COPY — диапазон текущей версии, DATA — новые байты из тела запроса.
+// Новая версия собирается multipart-загрузкой: длинные неизменные диапазоны копируются на стороне хранилища
+// (UploadPartCopy), а изменённые байты вместе с короткими соседними диапазонами досылаются частями.
+// Поэтому трафик клиента пропорционален изменениям, а не размеру файла.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeltaSyncService {
+
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024; // Минимальный размер части S3 (кроме последней)
+    private static final long MAX_PART_SIZE = 5L * 1024 * 1024 * 1024; // Максимальный размер части S3
+    private static final int MAX_PARTS = 10_000; // Максимум частей в одной multipart-загрузке S3
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final StorageBackend storageBackend; // Хранилище содержимого файлов
+    private final ResourceMetadataService resourceMetadataService; // Индекс метаданных ресурсов
+    private final BlobStoreService blobStoreService; // Хранилище с адресацией по содержимому
+    private final StorageQuotaService storageQuotaService; // Квоты пользователей
+    private final TransferLimitService transferLimitService; // Ограничение скорости и числа передач пользователя
+    private final ThumbnailService thumbnailService; // Миниатюры изображений
+
+    @Value("${delta.default-block-size}")
+    private int defaultBlockSize;
+
+    @Value("${delta.min-block-size}")
+    private int minBlockSize;
+
+    @Value("${delta.max-block-size}")
+    private int maxBlockSize;
+
+    @Value("${delta.max-blocks}")
+    private int maxBlocks; // Больше блоков — блок увеличивается, чтобы сигнатура оставалась небольшой
+
+    @Value("${delta.max-instructions}")
+    private int maxInstructions;
+
+    @Value("${delta.part-size}")
+    private long partSize; // Размер части, которую сервер собирает из новых байт и коротких диапазонов
+
+    // Сигнатура текущей версии файла: файл читается из хранилища один раз, блок за блоком
+    public FileSignature getSignature(String username, String path, Integer requestedBlockSize) {
+        String objectName = objectName(username, path);
+        StorageObject source = stat(objectName, path);
+        int blockSize = blockSize(source.size(), requestedBlockSize);
+
+        List<BlockSignature> blocks = new ArrayList<>((int) ceilDiv(source.size(), blockSize));
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[blockSize];
+        try (InputStream stream = storageBackend.get(objectName, 0, -1)) {
+            int index = 0;
+            int length;
+            while ((length = stream.readNBytes(buffer, 0, blockSize)) > 0) {
+                digest.update(buffer, 0, length);
+                blocks.add(new BlockSignature(index++, weakChecksum(buffer, length), HEX.formatHex(digest.digest())));
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать {} для сигнатуры: {}", objectName, e.getMessage());
+            throw new ValidationException("Failed to read file: " + path); // Ошибка при чтении файла
+        }
+
+        return new FileSignature(ResourcePaths.parentOf(path), ResourcePaths.nameOf(path), source.size(),
+                source.etag(), blockSize, blocks);
+    }
+
+    // Сборка новой версии файла из текущей (baseEtag из сигнатуры) и присланных инструкций
+    public ResourceInfo applyDelta(String username, String path, String baseEtag,
+                                   List<DeltaInstruction> instructions, MultipartFile data) {
+        if (blobStoreService.isEnabled() || resourceMetadataService.findDigest(username, path).isPresent()) {
+            // Содержимое в блобе общее для нескольких файлов, а адрес блоба — хеш всего содержимого
+            throw new ValidationException("Delta updates are not supported for deduplicated files");
+        }
+        String objectName = objectName(username, path);
+        StorageObject source = stat(objectName, path);
+        checkBase(source, baseEtag, path);
+
+        long dataSize = data != null ? data.getSize() : 0;
+        long targetSize = validate(instructions, source.size(), dataSize);
+        List<PartPlan> parts = planParts(instructions);
+        if (parts.size() > MAX_PARTS) {
+            throw new ValidationException("Delta is too fragmented: " + parts.size() + " parts, limit is " + MAX_PARTS);
+        }
+
+        // Прирост размера резервируется до передачи и снимается, когда новая версия учтена в счётчиках
+        try (QuotaReservation reservation = storageQuotaService.reserve(username, targetSize - source.size())) {
+            StorageObject stored;
+            try (TransferPermit transferPermit = transferLimitService.acquire(username, TransferDirection.UPLOAD);
+                 InputStream dataStream = transferPermit.throttle(data != null ? data.getInputStream() : InputStream.nullInputStream())) {
+                stored = targetSize == 0
+                        ? storageBackend.put(objectName, InputStream.nullInputStream(), 0, null)
+                        : assemble(objectName, path, baseEtag, parts, dataStream);
+            } catch (TooManyRequestsException | PreconditionFailedException e) {
+                throw e;
+            } catch (Exception e) {
+                log.warn("Не удалось применить дельту к {}: {}", objectName, e.getMessage());
+                throw new ValidationException("Failed to update file: " + path); // Ошибка при сборке новой версии
+            }
+
+            resourceMetadataService.recordFile(username, path, targetSize, stored.etag(), stored.lastModified());
+            reservation.release(); // Новая версия учтена в счётчиках — резерв больше не нужен
+        }
+        thumbnailService.scheduleGeneration(username, path);
+        log.info("Файл {} пользователя {} обновлён дельтой: {} байт новых данных из {}", path, username, dataSize, targetSize);
+
+        return ResourceInfo.builder()
+                .path(ResourcePaths.parentOf(path)) // Путь к папке
+                .name(ResourcePaths.nameOf(path)) // Имя файла
+                .size(targetSize) // Размер новой версии
+                .type("FILE") // Тип ресурса
+                .build();
+    }
+
+    // Части загружаются по порядку: буферные части читают тело запроса последовательно.
+    // Перед сборкой версия источника проверяется ещё раз: если файл перезаписали, загрузка отменяется.
+    private StorageObject assemble(String objectName, String path, String baseEtag,
+                                   List<PartPlan> parts, InputStream dataStream) throws IOException {
+        String uploadId = storageBackend.createMultipartUpload(objectName);
+        try {
+            List<UploadedPart> uploaded = new ArrayList<>(parts.size());
+            for (PartPlan part : parts) {
+                int partNumber = uploaded.size() + 1;
+                String etag = part.isCopy()
+                        ? storageBackend.uploadPartCopy(objectName, uploadId, partNumber, objectName,
+                                part.pieces().get(0).offset(), part.length())
+                        : storageBackend.uploadPart(objectName, uploadId, partNumber,
+                                new PartInputStream(objectName, part.pieces(), dataStream), part.length());
+                uploaded.add(new UploadedPart(partNumber, etag));
+            }
+            checkBase(storageBackend.stat(objectName), baseEtag, path);
+            return storageBackend.completeMultipartUpload(objectName, uploadId, uploaded);
+        } catch (IOException | RuntimeException e) {
+            try {
+                storageBackend.abortMultipartUpload(objectName, uploadId);
+            } catch (IOException abortError) {
+                e.addSuppressed(abortError);
+            }
+            throw e;
+        }
+    }
+
+    // Разбиение инструкций на части S3: длинный COPY (от минимального размера части) становится отдельной
+    // частью UploadPartCopy, всё остальное копится в буферную часть. Буферная часть закрывается на partSize,
+    // а перед копируемой частью — как только дорастает до минимального размера, поэтому все части,
+    // кроме последней, не меньше минимума S3.
+    private List<PartPlan> planParts(List<DeltaInstruction> instructions) {
+        List<PartPlan> parts = new ArrayList<>();
+        List<Piece> pending = new ArrayList<>();
+        long pendingBytes = 0;
+        for (DeltaInstruction instruction : instructions) {
+            boolean copy = instruction.operation() == DeltaOperation.COPY;
+            long offset = instruction.offset();
+            long remaining = instruction.length();
+            while (remaining > 0) {
+                long take;
+                if (copy) {
+                    if (pendingBytes >= MIN_PART_SIZE) {
+                        parts.add(new PartPlan(false, List.copyOf(pending)));
+                        pending.clear();
+                        pendingBytes = 0;
+                    }
+                    if (pendingBytes == 0 && remaining >= MIN_PART_SIZE) {
+                        take = Math.min(remaining, MAX_PART_SIZE);
+                        parts.add(new PartPlan(true, List.of(new Piece(true, offset, take))));
+                        offset += take;
+                        remaining -= take;
+                        continue;
+                    }
+                    // Короткий диапазон или добор буферной части до минимума: байты прочитает сервер
+                    take = pendingBytes == 0 ? remaining : Math.min(remaining, MIN_PART_SIZE - pendingBytes);
+                } else {
+                    take = Math.min(remaining, partSize - pendingBytes);
+                }
+                pending.add(new Piece(copy, offset, take));
+                pendingBytes += take;
+                offset += take;
+                remaining -= take;
+                if (pendingBytes >= partSize) {
+                    parts.add(new PartPlan(false, List.copyOf(pending)));
+                    pending.clear();
+                    pendingBytes = 0;
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            parts.add(new PartPlan(false, List.copyOf(pending)));
+        }
+        return parts;
+    }
+
+    // Проверка инструкций, возвращает размер новой версии
+    private long validate(List<DeltaInstruction> instructions, long sourceSize, long dataSize) {
+        if (instructions == null) {
+            throw new ValidationException("Delta instructions are required");
+        }
+        if (instructions.size() > maxInstructions) {
+            throw new ValidationException("Too many delta instructions: " + instructions.size() + ", limit is " + maxInstructions);
+        }
+        long targetSize = 0;
+        long dataBytes = 0;
+        for (DeltaInstruction instruction : instructions) {
+            if (instruction.operation() == null || instruction.length() <= 0) {
+                throw new ValidationException("Invalid delta instruction: " + instruction);
+            }
+            if (instruction.operation() == DeltaOperation.COPY) {
+                if (instruction.offset() < 0 || instruction.offset() > sourceSize - instruction.length()) {
+                    throw new ValidationException("Copy range " + instruction.offset() + "+" + instruction.length()
+                            + " is outside of the base version (" + sourceSize + " bytes)");
+                }
+            } else {
+                dataBytes += instruction.length();
+            }
+            targetSize += instruction.length();
+        }
+        if (dataBytes != dataSize) {
+            throw new ValidationException("Data instructions cover " + dataBytes + " bytes, request carries " + dataSize);
+        }
+        return targetSize;
+    }
+
+    // Размер блока: запрошенный в пределах настроек, но не больше maxBlocks блоков на файл
+    private int blockSize(long size, Integer requested) {
+        long blockSize = requested != null ? requested : defaultBlockSize;
+        if (blockSize < minBlockSize || blockSize > maxBlockSize) {
+            throw new ValidationException("Block size must be between " + minBlockSize + " and " + maxBlockSize + ": " + blockSize);
+        }
+        blockSize = Math.max(blockSize, ceilDiv(size, maxBlocks));
+        if (blockSize > maxBlockSize) {
+            throw new ValidationException("File is too large for a delta signature: " + size);
+        }
+        return (int) blockSize;
+    }
+
+    private StorageObject stat(String objectName, String path) {
+        if (ResourcePaths.isDirectory(path)) {
+            throw new ValidationException("Delta updates are supported for files only: " + path);
+        }
+        StorageObject source;
+        try {
+            source = storageBackend.stat(objectName);
+        } catch (NoSuchFileException e) {
+            throw new NotFoundException("Resource not found: " + path);
+        } catch (IOException e) {
+            throw new ValidationException("Failed to read file: " + path); // Ошибка при обращении к хранилищу
+        }
+        if (source.isEncoded()) {
+            // Диапазоны сжатого объекта не совпадают с диапазонами содержимого
+            throw new ValidationException("Delta updates are not supported for compressed files");
+        }
+        return source;
+    }
+
+    // Дельта вычислена относительно конкретной версии; к другой её применять нельзя
+    private static void checkBase(StorageObject source, String baseEtag, String path) {
+        if (baseEtag == null || !source.etag().equals(baseEtag.replace("\"", ""))) {
+            throw new PreconditionFailedException("File " + path + " has changed since the signature was taken");
+        }
+    }
+
+    // Слабая сумма rsync: a = Σx_i, b = Σ(L - i)·x_i (обе по модулю 2^16), сумма = a + 2^16·b.
+    // Клиент сдвигает окно на байт за O(1): a' = a - x_k + x_{k+L}, b' = b - L·x_k + a'.
+    static long weakChecksum(byte[] block, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            a += block[i] & 0xff;
+            b += a; // Сумма префиксных сумм равна Σ(L - i)·x_i
+        }
+        return ((long) (b & 0xffff) << 16) | (a & 0xffff);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private String objectName(String username, String path) {
+        return "user-" + username + "-files/" + ResourcePaths.requireSafe(path); // Префикс в формате user-${username}-files/
+    }
+
+    // Кусок части: диапазон текущей версии (copy) или следующие байты тела запроса
+    private record Piece(boolean copy, long offset, long length) {
+    }
+
+    private record PartPlan(boolean isCopy, List<Piece> pieces) {
+
+        long length() {
+            return pieces.stream().mapToLong(Piece::length).sum();
+        }
+    }
+
+    // Содержимое буферной части: куски читаются по очереди, диапазоны источника открываются по мере надобности.
+    // Тело запроса общее для всех частей и здесь не закрывается.
+    private class PartInputStream extends InputStream {
+
+        private final String sourceObject;
+        private final Iterator<Piece> pieces;
+        private final InputStream dataStream;
+        private InputStream current;
+        private boolean currentIsSource;
+        private long currentRemaining;
+
+        private PartInputStream(String sourceObject, List<Piece> pieces, InputStream dataStream) {
+            this.sourceObject = sourceObject;
+            this.pieces = pieces.iterator();
+            this.dataStream = dataStream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (currentRemaining == 0) {
+                if (!advance()) {
+                    return -1;
+                }
+            }
+            int read = current.read(b, off, (int) Math.min(len, currentRemaining));
+            if (read < 0) {
+                throw new EOFException("Delta data ended " + currentRemaining + " bytes early");
+            }
+            currentRemaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeCurrent();
+        }
+
+        private boolean advance() throws IOException {
+            closeCurrent();
+            if (!pieces.hasNext()) {
+                return false;
+            }
+            Piece piece = pieces.next();
+            currentIsSource = piece.copy();
+            current = piece.copy() ? storageBackend.get(sourceObject, piece.offset(), piece.length()) : dataStream;
+            currentRemaining = piece.length();
+            return true;
+        }
+
+        private void closeCurrent() throws IOException {
+            if (current != null && currentIsSource) {
+                current.close();
+            }
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package ru.anikson.cloudfilestorage.service.minio;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import ru.anikson.cloudfilestorage.entity.ResourceMetadata;
+import ru.anikson.cloudfilestorage.service.metadata.ResourceMetadataService;
+import ru.anikson.cloudfilestorage.service.metadata.ResourcePaths;
+import ru.anikson.cloudfilestorage.service.storage.CompressionService;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Потоковая упаковка папки в ZIP.
+// Архив пишется в выходной поток по мере чтения объектов, поэтому расход памяти не зависит от размера папки.
+// ZipOutputStream пишет DEFLATED-записи с дескрипторами данных (размер заранее не нужен)
+// и сам переходит на ZIP64 для файлов больше 4 ГБ и архивов более чем из 65535 записей.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DirectoryArchiveService {
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final int PIPE_BUFFER_SIZE = 1024 * 1024;
+
+    private final CompressionService compressionService; // Чтение объектов с распаковкой сжатых
+    private final ResourceMetadataService resourceMetadataService; // Индекс метаданных (содержимое папки)
+    private final BlobStoreService blobStoreService; // Ключи блобов
+    @Qualifier("minioTaskExecutor")
+    private final Executor minioTaskExecutor; // Пул для параллельной предзагрузки объектов
+
+    private final SimpleAsyncTaskExecutor pipeWriterExecutor = new SimpleAsyncTaskExecutor("zip-writer-");
+
+    @Value("${minio.zip.read-ahead-objects}")
+    private int readAheadObjects; // Сколько объектов открывается заранее
+
+    @Value("${minio.zip.read-ahead-bytes}")
+    private int readAheadBytes; // Сколько байт каждого объекта читается заранее
+
+    @Value("${minio.zip.compression-level}")
+    private int compressionLevel;
+
+    // Запись ZIP-архива папки пользователя в выходной поток.
+    // Содержимое папки берётся из индекса метаданных: файлы из хранилища блобов есть только там.
+    public void writeZip(String username, String path, OutputStream outputStream) throws IOException {
+        String directoryPath = ResourcePaths.directory(path);
+        String userPrefix = getUserPrefix(username);
+        Iterator<ResourceMetadata> tree = resourceMetadataService.iterateTree(username, directoryPath);
+
+        writeZip(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return tree.hasNext();
+            }
+
+            @Override
+            public ArchiveEntry next() {
+                ResourceMetadata metadata = tree.next();
+                String name = metadata.getPath().substring(directoryPath.length());
+                Long entryTime = metadata.getLastModified() != null ? metadata.getLastModified().toInstant().toEpochMilli() : null;
+                if (ResourcePaths.isDirectory(metadata.getPath())) {
+                    return new ArchiveEntry(name, null, entryTime);
+                }
+                String objectName = metadata.getDigest() != null
+                        ? blobStoreService.objectName(metadata.getDigest())
+                        : userPrefix + metadata.getPath();
+                return new ArchiveEntry(name, objectName, entryTime);
+            }
+        }, outputStream);
+        log.info("ZIP-архив папки {} пользователя {} отправлен", directoryPath, username);
+    }
+
+    // Запись ZIP-архива из заданного списка записей (имя в архиве и ключ объекта в бакете)
+    void writeZip(Iterator<ArchiveEntry> entries, OutputStream outputStream) throws IOException {
+        // Окно предзагрузки: объекты открываются параллельно, а в архив пишутся строго по порядку листинга
+        Deque<PendingEntry> window = new ArrayDeque<>();
+        ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(outputStream, OUTPUT_BUFFER_SIZE));
+        zos.setLevel(compressionLevel);
+        try {
+            while (true) {
+                fillWindow(entries, window);
+                PendingEntry entry = window.poll();
+                if (entry == null) {
+                    break;
+                }
+
+                ZipEntry zipEntry = new ZipEntry(entry.name());
+                if (entry.lastModified() != null) {
+                    zipEntry.setTime(entry.lastModified());
+                }
+                zos.putNextEntry(zipEntry);
+                if (entry.content() != null) {
+                    try (InputStream stream = await(entry.content())) {
+                        stream.transferTo(zos);
+                    }
+                }
+                zos.closeEntry();
+            }
+            zos.finish();
+            zos.flush();
+        } finally {
+            // При обрыве соединения закрываем уже открытые объекты, чтобы вернуть соединения в пул
+            window.forEach(entry -> {
+                if (entry.content() != null) {
+                    entry.content().thenAccept(DirectoryArchiveService::closeQuietly);
+                }
+            });
+        }
+    }
+
+    // ZIP-архив папки в виде InputStream: архив пишется в отдельном потоке через канал ограниченного размера
+    public InputStream openZipStream(String username, String path) throws IOException {
+        PipedInputStream inputStream = new PipedInputStream(PIPE_BUFFER_SIZE);
+        PipedOutputStream outputStream = new PipedOutputStream(inputStream);
+        pipeWriterExecutor.execute(() -> {
+            try (outputStream) {
+                writeZip(username, path, outputStream);
+            } catch (IOException e) {
+                log.error("Ошибка при создании ZIP-архива папки {} пользователя {}: {}", path, username, e.getMessage());
+            }
+        });
+        return inputStream;
+    }
+
+    private void fillWindow(Iterator<ArchiveEntry> entries, Deque<PendingEntry> window) {
+        while (window.size() < readAheadObjects && entries.hasNext()) {
+            ArchiveEntry entry = entries.next();
+            if (entry.name().isEmpty()) {
+                continue; // Маркер самой папки
+            }
+            if (entry.objectName() == null) {
+                window.add(new PendingEntry(entry.name(), entry.lastModified(), null)); // Пустая вложенная папка
+            } else {
+                String objectName = entry.objectName();
+                window.add(new PendingEntry(entry.name(), entry.lastModified(),
+                        CompletableFuture.supplyAsync(() -> prefetch(objectName), minioTaskExecutor)));
+            }
+        }
+    }
+
+    // Открытие объекта и чтение его начала заранее, остаток дочитывается уже при записи в архив
+    private InputStream prefetch(String objectName) {
+        InputStream stream = null;
+        try {
+            stream = compressionService.open(objectName); // Сжатые объекты кладутся в архив распакованными
+            byte[] head = stream.readNBytes(readAheadBytes);
+            if (head.length < readAheadBytes) {
+                stream.close(); // Объект прочитан целиком, соединение больше не нужно
+                return new ByteArrayInputStream(head);
+            }
+            return new SequenceInputStream(new ByteArrayInputStream(head), stream);
+        } catch (Exception e) {
+            closeQuietly(stream);
+            throw new CompletionException(new IOException("Failed to read object: " + objectName, e));
+        }
+    }
+
+    private static InputStream await(CompletableFuture<InputStream> content) throws IOException {
+        try {
+            return content.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading directory", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof IOException io ? io : new IOException(cause);
+        }
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.debug("Failed to close object stream: {}", e.getMessage());
+        }
+    }
+
+    // Запись архива: objectName == null у папок
+    record ArchiveEntry(String name, String objectName, Long lastModified) {
+    }
+
+    // Формирование префикса пользователя
+    private String getUserPrefix(String username) {
+        return "user-" + username + "-files/"; // Префикс в формате user-${username}-files/
+    }
+
+    private record PendingEntry(String name, Long lastModified, CompletableFuture<InputStream> content) {
+    }
+}
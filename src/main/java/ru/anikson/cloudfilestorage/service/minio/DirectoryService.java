@@ -1,60 +1,77 @@
 package ru.anikson.cloudfilestorage.service.minio;
 
-import io.minio.ListObjectsArgs;
-import io.minio.MinioClient;
-import io.minio.PutObjectArgs;
-import io.minio.Result;
-import io.minio.messages.Item;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import ru.anikson.cloudfilestorage.config.minio.MinioBucketConfiguration;
+import ru.anikson.cloudfilestorage.dto.resource.DirectoryPage;
+import ru.anikson.cloudfilestorage.dto.resource.DirectorySort;
 import ru.anikson.cloudfilestorage.entity.ResourceInfo;
+import ru.anikson.cloudfilestorage.exception.NotFoundException;
 import ru.anikson.cloudfilestorage.exception.ValidationException;
+import ru.anikson.cloudfilestorage.service.metadata.ResourceMetadataService;
+import ru.anikson.cloudfilestorage.service.metadata.ResourcePaths;
+import ru.anikson.cloudfilestorage.service.storage.StorageBackend;
 
-import java.io.ByteArrayInputStream;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class DirectoryService {
 
-    private final MinioClient minioClient; // Клиент для работы с MinIO
-    private final MinioBucketConfiguration minioBucketConfiguration; // Конфигурация MinIO (имя бакета и т.д.)
+    private static final int STREAM_PAGE_SIZE = 1000; // Записей за один запрос к индексу при потоковом листинге
 
-    // Получение содержимого папки
+    private final StorageBackend storageBackend; // Хранилище содержимого файлов
+    private final ResourceMetadataService resourceMetadataService; // Индекс метаданных ресурсов
+    private final ObjectMapper objectMapper; // Сериализация записей потокового листинга
+
+    @Value("${directory.max-page-size}")
+    private int maxPageSize;
+
+    // Получение содержимого папки из индекса метаданных
     public List<ResourceInfo> getDirectoryContent(String username, String path) {
-        String userPrefix = getUserPrefix(username); // Формируем префикс пользователя
-        String fullPath = userPrefix + path; // Полный путь к папке
+        return resourceMetadataService.getDirectoryContent(username, path);
+    }
 
-        try {
-            List<ResourceInfo> resources = new ArrayList<>();
-
-            // Получаем список объектов в папке
-            Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
-                    .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
-                    .prefix(fullPath) // Указываем полный путь к папке
-                    .recursive(false) // Не рекурсивно
-                    .build());
-
-            // Формируем информацию о каждом объекте
-            for (Result<Item> result : results) {
-                Item item = result.get();
-                resources.add(ResourceInfo.builder()
-                        .path(path) // Путь к папке
-                        .name(item.objectName().replace(fullPath, "")) // Имя файла или папки
-                        .size(item.isDir() ? null : item.size()) // Размер файла (если это файл)
-                        .type(item.isDir() ? "DIRECTORY" : "FILE") // Тип ресурса
-                        .build());
-            }
-            return resources;
-        } catch (Exception e) {
-            throw new ValidationException("Failed to get directory content: " + path); // Ошибка при получении содержимого
+    // Страница содержимого папки; без limit возвращается всё содержимое (как раньше), limit ограничен сверху
+    public DirectoryPage getDirectoryPage(String username, String path, DirectorySort sort, Sort.Direction direction,
+                                          Integer limit, String cursor) {
+        if (limit != null && limit <= 0) {
+            throw new ValidationException("Invalid limit: " + limit);
+        }
+        int pageSize = limit != null ? Math.min(limit, maxPageSize) : 0;
+        return resourceMetadataService.getDirectoryPage(username, path, sort, direction, pageSize, cursor);
+    }
+
+    // Подготовка потокового листинга: папка должна существовать до начала ответа
+    public void prepareDirectoryStream(String username, String path) {
+        if (!resourceMetadataService.directoryExists(username, path)) {
+            throw new NotFoundException("Directory not found: " + path);
         }
     }
 
+    // Потоковый листинг в NDJSON: записи пишутся страницами, память не зависит от размера папки
+    public void writeDirectoryContent(String username, String path, DirectorySort sort, Sort.Direction direction,
+                                      OutputStream outputStream) throws IOException {
+        String cursor = null;
+        do {
+            DirectoryPage page = resourceMetadataService.getDirectoryPage(username, path, sort, direction, STREAM_PAGE_SIZE, cursor);
+            for (ResourceInfo resource : page.items()) {
+                outputStream.write(objectMapper.writeValueAsBytes(resource));
+                outputStream.write('\n');
+            }
+            outputStream.flush(); // Клиент получает записи сразу, не дожидаясь конца листинга
+            cursor = page.nextCursor();
+        } while (cursor != null);
+    }
+
     // Создание папки
     public ResourceInfo createDirectory(String username, String path) {
+        ResourcePaths.requireSafe(path);
         String userPrefix = getUserPrefix(username); // Формируем префикс пользователя
         String fullPath = userPrefix + path; // Полный путь к папке
 
@@ -64,18 +81,17 @@ public class DirectoryService {
                 fullPath += "/";
             }
 
-            // Создаем папку в MinIO
-            minioClient.putObject(PutObjectArgs.builder()
-                    .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
-                    .object(fullPath) // Указываем полный путь к папке
-                    .stream(new ByteArrayInputStream(new byte[0]), 0, -1) // Пустой поток для создания папки
-                    .build());
+            // Создаем папку в хранилище: пустой объект с "/" на конце
+            storageBackend.put(fullPath, InputStream.nullInputStream(), 0, null);
+            resourceMetadataService.recordDirectory(username, path);
 
             // Возвращаем информацию о созданной папке
             return ResourceInfo.builder()
                     .path(getParentPath(path)) // Путь к родительской папке
                     .name(getFileName(path)) // Имя папки
+                    .size(0L) // Новая папка пуста
                     .type("DIRECTORY") // Тип ресурса
+                    .fileCount(0L)
                     .build();
         } catch (Exception e) {
             throw new ValidationException("Failed to create directory: " + path); // Ошибка при создании папки
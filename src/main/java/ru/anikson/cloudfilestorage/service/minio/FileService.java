@@ -1,170 +1,377 @@
 package ru.anikson.cloudfilestorage.service.minio;
 
-import io.minio.*;
-import io.minio.messages.Item;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import ru.anikson.cloudfilestorage.config.minio.MinioBucketConfiguration;
+import ru.anikson.cloudfilestorage.dto.resource.DeleteResult;
+import ru.anikson.cloudfilestorage.dto.resource.DirectoryDownload;
+import ru.anikson.cloudfilestorage.dto.resource.DownloadRequest;
+import ru.anikson.cloudfilestorage.dto.resource.FileUploadResult;
+import ru.anikson.cloudfilestorage.dto.resource.ResourceDownload;
+import ru.anikson.cloudfilestorage.dto.resource.ResourceSearchQuery;
+import ru.anikson.cloudfilestorage.dto.resource.StoredBlob;
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
 import ru.anikson.cloudfilestorage.entity.ResourceInfo;
+import ru.anikson.cloudfilestorage.exception.RangeNotSatisfiableException;
 import ru.anikson.cloudfilestorage.exception.ValidationException;
+import ru.anikson.cloudfilestorage.service.metadata.QuotaReservation;
+import ru.anikson.cloudfilestorage.service.metadata.ResourceMetadataService;
+import ru.anikson.cloudfilestorage.service.metadata.ResourcePaths;
+import ru.anikson.cloudfilestorage.service.metadata.StorageQuotaService;
+import ru.anikson.cloudfilestorage.service.storage.CompressionService;
+import ru.anikson.cloudfilestorage.service.storage.StorageBackend;
+import ru.anikson.cloudfilestorage.service.transfer.TransferDirection;
+import ru.anikson.cloudfilestorage.service.transfer.TransferLimitService;
+import ru.anikson.cloudfilestorage.service.transfer.TransferPermit;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class FileService {
 
-    private final MinioClient minioClient; // Клиент для работы с MinIO
-    private final MinioBucketConfiguration minioBucketConfiguration; // Конфигурация MinIO (имя бакета и т.д.)
+    private final StorageBackend storageBackend; // Хранилище содержимого файлов
+    private final DirectoryArchiveService directoryArchiveService; // Потоковая упаковка папок в ZIP
+    private final BulkDeleteService bulkDeleteService; // Массовое удаление объектов
+    private final MoveService moveService; // Серверное перемещение объектов и папок
+    private final ResourceMetadataService resourceMetadataService; // Индекс метаданных ресурсов
+    private final BlobStoreService blobStoreService; // Хранилище с адресацией по содержимому
+    private final StorageQuotaService storageQuotaService; // Квоты пользователей
+    private final TransferLimitService transferLimitService; // Ограничение скорости и числа передач пользователя
+    private final ThumbnailService thumbnailService; // Миниатюры изображений
+    private final CompressionService compressionService; // Прозрачное сжатие объектов
+    @Qualifier("minioTaskExecutor")
+    private final Executor minioTaskExecutor; // Пул для параллельных обращений к MinIO
 
-    // Получение информации о ресурсе
+    @Value("${minio.upload.parallelism-per-request}")
+    private int uploadParallelism; // Сколько файлов одного запроса загружаются одновременно
+
+    @Value("${search.default-page-size}")
+    private int searchDefaultPageSize;
+
+    @Value("${search.max-page-size}")
+    private int searchMaxPageSize;
+
+    // Получение информации о ресурсе из индекса метаданных
     public ResourceInfo getResourceInfo(String username, String path) {
+        ResourcePaths.requireSafe(path);
+        return resourceMetadataService.getResourceInfo(username, path);
+    }
+
+    // Удаление ресурса: файл удаляется одним запросом, папка — пачками через BulkDeleteService
+    public DeleteResult deleteResource(String username, String path) {
+        ResourcePaths.requireSafe(path);
         String userPrefix = getUserPrefix(username); // Формируем префикс пользователя
         String fullPath = userPrefix + path; // Полный путь к ресурсу
 
+        if (path.endsWith("/")) {
+            DeleteResult result = bulkDeleteService.deletePrefix(fullPath);
+            if (result.failed() > 0) {
+                resourceMetadataService.rebuild(username); // Часть объектов осталась в хранилище — индекс строится заново
+            } else {
+                resourceMetadataService.removeResource(username, path);
+            }
+            thumbnailService.deleteThumbnails(username, path);
+            return result;
+        }
+
         try {
-            // Получаем метаданные объекта из MinIO
-            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
-                    .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
-                    .object(fullPath) // Указываем полный путь к объекту
-                    .build());
-
-            // Возвращаем информацию о ресурсе
-            return ResourceInfo.builder()
-                    .path(getParentPath(path)) // Путь к родительской папке
-                    .name(getFileName(path)) // Имя файла или папки
-                    .size(stat.size()) // Размер файла (если это файл)
-                    .type("FILE") // Тип ресурса (FILE или DIRECTORY)
-                    .build();
+            // Удаляем объект из хранилища
+            storageBackend.delete(fullPath);
+            resourceMetadataService.removeResource(username, path);
+            thumbnailService.deleteThumbnails(username, path);
+            return new DeleteResult(1, 0);
         } catch (Exception e) {
-            throw new ValidationException("Resource not found: " + path); // Ошибка, если ресурс не найден
+            throw new ValidationException("Failed to delete resource: " + path); // Ошибка при удалении
         }
     }
 
-    // Удаление ресурса
-    public void deleteResource(String username, String path) {
+    // Скачивание ресурса (потоково, с поддержкой Range/If-Range).
+    // Сжатый объект отдаётся как есть, если клиент принимает gzip, иначе распаковывается на лету
+    public ResourceDownload downloadResource(String username, String path, DownloadRequest request) {
+        ResourcePaths.requireSafe(path);
         String userPrefix = getUserPrefix(username); // Формируем префикс пользователя
-        String fullPath = userPrefix + path; // Полный путь к ресурсу
+        // Файл из хранилища блобов читается по ключу блоба, остальные — по пути пользователя
+        String fullPath = resourceMetadataService.findDigest(username, path)
+                .map(blobStoreService::objectName)
+                .orElse(userPrefix + path);
 
+        StorageObject stat;
+        Path localFile;
         try {
-            // Удаляем объект из MinIO
-            minioClient.removeObject(RemoveObjectArgs.builder()
-                    .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
-                    .object(fullPath) // Указываем полный путь к объекту
-                    .build());
+            // Получаем размер и версию объекта, чтобы правильно обработать диапазон
+            stat = storageBackend.stat(fullPath);
+            localFile = storageBackend.localFile(fullPath).orElse(null);
         } catch (Exception e) {
-            throw new ValidationException("Failed to delete resource: " + path); // Ошибка при удалении
+            throw new ValidationException("Resource not found: " + path); // Ошибка, если ресурс не найден
         }
-    }
 
-    // Скачивание ресурса
-    public ByteArrayResource downloadResource(String username, String path) {
-        String userPrefix = getUserPrefix(username); // Формируем префикс пользователя
-        String fullPath = userPrefix + path; // Полный путь к ресурсу
+        // Сжатое и исходное представления — разные байты, поэтому и ETag у них разный
+        boolean passThrough = stat.isEncoded() && request.acceptsGzip() && CompressionService.GZIP.equals(stat.encoding());
+        boolean decode = stat.isEncoded() && !passThrough;
+        long totalSize = decode ? stat.decodedSize() : stat.size();
+        String etag = "\"" + stat.etag() + (passThrough ? "-" + stat.encoding() : "") + "\"";
+        // Версия у клиента совпадает: ответ без тела, слот передачи не занимается
+        if (isNotModified(request, etag, stat.lastModified())) {
+            return ResourceDownload.notModified(getFileName(path), etag, stat.lastModified(), stat.isEncoded());
+        }
 
-        try (InputStream stream = minioClient.getObject(GetObjectArgs.builder()
-                .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
-                .object(fullPath) // Указываем полный путь к объекту
-                .build())) {
-            // Читаем содержимое файла и возвращаем его как ByteArrayResource
-            return new ByteArrayResource(stream.readAllBytes());
-        } catch (Exception e) {
-            throw new ValidationException("Failed to download resource: " + path); // Ошибка при скачивании
+        long offset = 0;
+        long length = totalSize;
+        boolean partial = false;
+
+        // Учитываем только одиночный диапазон; несколько диапазонов отдаём целым объектом (RFC 9110 это допускает)
+        List<HttpRange> ranges = request.ranges();
+        if (ranges.size() == 1 && isIfRangeSatisfied(request.ifRange(), etag, stat.lastModified())) {
+            HttpRange range = ranges.get(0);
+            long start = range.getRangeStart(totalSize);
+            if (start < 0 || start >= totalSize) {
+                throw new RangeNotSatisfiableException("Requested range not satisfiable: " + path, totalSize);
+            }
+            offset = start;
+            length = range.getRangeEnd(totalSize) - start + 1;
+            partial = true;
+        }
+
+        String contentType = contentTypeOf(stat);
+        // Слот передачи занимается последним и держится, пока поток не закрыт;
+        // ограниченную по скорости передачу sendfile не отдаёт
+        TransferPermit permit = transferLimitService.acquire(username, TransferDirection.DOWNLOAD);
+        if (permit.isLimited() || decode) {
+            localFile = null; // Распаковка тоже идёт через приложение
         }
+
+        long rangeOffset = offset;
+        long rangeLength = partial ? length : -1; // Весь объект читается без диапазона
+        boolean empty = length == 0;
+        // Объект читается диапазоном прямо из хранилища, ничего не буферизуется в памяти
+        InputStreamSource content = () -> {
+            try {
+                if (empty) {
+                    return permit.releaseOnClose(InputStream.nullInputStream()); // Пустой файл: в хранилище не обращаемся
+                }
+                return permit.releaseOnClose(decode
+                        ? compressionService.open(stat, rangeOffset, rangeLength)
+                        : storageBackend.get(fullPath, rangeOffset, rangeLength));
+            } catch (IOException | RuntimeException e) {
+                permit.close();
+                throw e;
+            }
+        };
+
+        return new ResourceDownload(
+                getFileName(path),
+                contentType,
+                passThrough ? stat.encoding() : null,
+                stat.isEncoded(),
+                totalSize,
+                offset,
+                length,
+                partial,
+                etag,
+                stat.lastModified(),
+                content,
+                localFile,
+                false,
+                permit::close);
     }
 
-    // Перемещение или переименование ресурса
+    // Подготовка скачивания папки: проверяем, что она существует, и занимаем слот передачи до записи архива
+    public DirectoryDownload prepareDirectoryDownload(String username, String path) {
+        ResourcePaths.requireSafe(path);
+        if (!resourceMetadataService.exists(username, path)) {
+            throw new ValidationException("Resource not found: " + path);
+        }
+
+        String directoryName = getFileName(path.substring(0, path.length() - 1));
+        TransferPermit permit = transferLimitService.acquire(username, TransferDirection.DOWNLOAD);
+        // Потоковая запись папки в виде ZIP-архива
+        return new DirectoryDownload((directoryName.isEmpty() ? "files" : directoryName) + ".zip", outputStream -> {
+            try (permit) {
+                directoryArchiveService.writeZip(username, path, permit.throttle(outputStream));
+            }
+        }, permit::close);
+    }
+
+    // Перемещение или переименование ресурса; путь, оканчивающийся на "/", перемещается как папка
     public ResourceInfo moveResource(String username, String from, String to) {
+        ResourcePaths.requireSafe(from);
+        ResourcePaths.requireSafe(to);
         String userPrefix = getUserPrefix(username); // Формируем префикс пользователя
-        String fullFromPath = userPrefix + from; // Полный путь к исходному объекту
-        String fullToPath = userPrefix + to; // Полный путь к целевому объекту
 
-        try {
-            // Копируем объект в новое место
-            minioClient.copyObject(CopyObjectArgs.builder()
-                    .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
-                    .object(fullToPath) // Указываем целевой путь
-                    .source(CopySource.builder()
-                            .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
-                            .object(fullFromPath) // Указываем исходный путь
-                            .build())
-                    .build());
-
-            // Удаляем исходный объект
-            deleteResource(username, from);
-
-            // Возвращаем информацию о перемещённом ресурсе
-            return getResourceInfo(username, to);
-        } catch (Exception e) {
-            throw new ValidationException("Failed to move resource from " + from + " to " + to); // Ошибка при перемещении
+        if (from.endsWith("/")) {
+            String targetPath = to.endsWith("/") ? to : to + "/";
+            moveService.movePrefix(userPrefix + from, userPrefix + targetPath);
+            resourceMetadataService.moveDirectory(username, from, targetPath);
+            thumbnailService.moveThumbnails(username, from, targetPath);
+
+            // Возвращаем информацию о перемещённой папке вместе с её итогами из индекса
+            return resourceMetadataService.getResourceInfo(username, targetPath);
         }
+
+        // Файл из хранилища блобов перемещается только в индексе
+        Optional<ResourceInfo> movedBlobFile = resourceMetadataService.moveBlobFile(username, from, to);
+        if (movedBlobFile.isPresent()) {
+            thumbnailService.moveThumbnails(username, from, to);
+            return movedBlobFile.get();
+        }
+
+        // Копируем объект в новое место и удаляем исходный
+        StorageObject stat = moveService.moveObject(userPrefix + from, userPrefix + to);
+        resourceMetadataService.moveFile(username, from, to, stat.decodedSize(), stat.etag(), ZonedDateTime.now());
+        thumbnailService.moveThumbnails(username, from, to);
+
+        // Возвращаем информацию о перемещённом ресурсе
+        return ResourceInfo.builder()
+                .path(getParentPath(to)) // Путь к родительской папке
+                .name(getFileName(to)) // Имя файла
+                .size(stat.decodedSize()) // Размер файла (для сжатого объекта — исходный, как в индексе)
+                .type("FILE") // Тип ресурса
+                .build();
     }
 
-    // Поиск ресурсов
-    public List<ResourceInfo> searchResources(String username, String query) {
+    // Поиск ресурсов по индексу метаданных; размер страницы ограничен сверху
+    public List<ResourceInfo> searchResources(String username, ResourceSearchQuery query) {
+        int pageSize = query.size() > 0 ? Math.min(query.size(), searchMaxPageSize) : searchDefaultPageSize;
+        return resourceMetadataService.search(username, new ResourceSearchQuery(query.query(), query.mode(),
+                query.type(), query.minSize(), query.maxSize(), query.page(), pageSize));
+    }
+
+    // Загрузка ресурсов: файлы пакета загружаются параллельно, не больше uploadParallelism одновременно на запрос.
+    // Ошибка одного файла не отменяет остальные — по каждому файлу возвращается свой результат.
+    // Место под весь пакет резервируется до начала передачи в хранилище и снимается, когда файлы учтены в счётчиках.
+    // Весь пакет — одна передача: один слот и общее ведро токенов на все файлы.
+    public List<FileUploadResult> uploadResources(String username, String path, MultipartFile[] files) {
+        ResourcePaths.requireSafe(path);
+        for (MultipartFile file : files) {
+            ResourcePaths.requireSafe(file.getOriginalFilename()); // Имя файла из multipart может содержать путь
+        }
         String userPrefix = getUserPrefix(username); // Формируем префикс пользователя
-        List<ResourceInfo> resources = new ArrayList<>();
+        Semaphore permits = new Semaphore(uploadParallelism);
+        List<CompletableFuture<FileUploadResult>> uploads = new ArrayList<>(files.length);
 
-        try {
-            // Получаем список объектов в бакете
-            Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
-                    .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
-                    .prefix(userPrefix) // Указываем префикс пользователя
-                    .recursive(true) // Рекурсивный поиск
-                    .build());
-
-            // Фильтруем объекты по запросу
-            for (Result<Item> result : results) {
-                Item item = result.get();
-                if (item.objectName().contains(query)) {
-                    resources.add(ResourceInfo.builder()
-                            .path(getParentPath(item.objectName().replace(userPrefix, ""))) // Путь к родительской папке
-                            .name(getFileName(item.objectName())) // Имя файла или папки
-                            .size(item.isDir() ? null : item.size()) // Размер файла (если это файл)
-                            .type(item.isDir() ? "DIRECTORY" : "FILE") // Тип ресурса
-                            .build());
-                }
+        try (QuotaReservation reservation = storageQuotaService.reserve(username, Arrays.stream(files).mapToLong(MultipartFile::getSize).sum());
+             TransferPermit transferPermit = transferLimitService.acquire(username, TransferDirection.UPLOAD)) {
+            for (MultipartFile file : files) {
+                permits.acquireUninterruptibly();
+                uploads.add(CompletableFuture.supplyAsync(() -> uploadFile(username, userPrefix, path, file, transferPermit), minioTaskExecutor)
+                        .whenComplete((result, e) -> permits.release()));
             }
-        } catch (Exception e) {
-            throw new ValidationException("Failed to search resources: " + query); // Ошибка при поиске
+            List<FileUploadResult> results = uploads.stream()
+                    .map(CompletableFuture::join)
+                    .toList();
+            reservation.release(); // Все файлы пакета учтены в счётчиках (или не загрузились) — резерв больше не нужен
+            // Миниатюры загруженных изображений создаются в фоне, ответ их не ждёт
+            results.stream()
+                    .filter(FileUploadResult::succeeded)
+                    .forEach(result -> thumbnailService.scheduleGeneration(username, result.path() + result.name()));
+            return results;
+        }
+    }
+
+    // Загрузка одного файла
+    private FileUploadResult uploadFile(String username, String userPrefix, String path, MultipartFile file, TransferPermit transferPermit) {
+        if (blobStoreService.isEnabled()) {
+            return uploadBlobFile(username, path, file, transferPermit);
         }
+        try (InputStream stream = transferPermit.throttle(file.getInputStream())) {
+            // Формируем полный путь к файлу
+            String filePath = userPrefix + path + file.getOriginalFilename();
+
+            // Загружаем файл в хранилище
+            StorageObject stored = compressionService.put(filePath, stream, file.getSize(), null);
+            resourceMetadataService.recordFile(username, path + file.getOriginalFilename(), file.getSize(),
+                    stored.etag(), stored.lastModified());
 
-        return resources;
+            return FileUploadResult.uploaded(path, file.getOriginalFilename(), file.getSize());
+        } catch (Exception e) {
+            log.warn("Failed to upload file {}: {}", file.getOriginalFilename(), e.getMessage());
+            return FileUploadResult.failed(path, file.getOriginalFilename(), file.getSize(),
+                    HttpStatus.INTERNAL_SERVER_ERROR.value(), "Failed to upload file: " + file.getOriginalFilename()); // Ошибка при загрузке
+        }
     }
 
-    // Загрузка ресурсов
-    public List<ResourceInfo> uploadResources(String username, String path, MultipartFile[] files) {
-        String userPrefix = getUserPrefix(username); // Формируем префикс пользователя
-        List<ResourceInfo> uploadedResources = new ArrayList<>();
+    // Загрузка файла в хранилище блобов: одинаковое содержимое хранится один раз
+    private FileUploadResult uploadBlobFile(String username, String path, MultipartFile file, TransferPermit transferPermit) {
+        try {
+            StoredBlob blob = blobStoreService.store(file, transferPermit);
+            try {
+                resourceMetadataService.recordBlobFile(username, path + file.getOriginalFilename(), blob, ZonedDateTime.now());
+            } catch (RuntimeException e) {
+                blobStoreService.release(blob.digest()); // Ссылка не попала в индекс — возвращаем её
+                throw e;
+            }
+            return FileUploadResult.uploaded(path, file.getOriginalFilename(), file.getSize());
+        } catch (RuntimeException e) {
+            log.warn("Failed to upload file {}: {}", file.getOriginalFilename(), e.getMessage());
+            return FileUploadResult.failed(path, file.getOriginalFilename(), file.getSize(),
+                    HttpStatus.INTERNAL_SERVER_ERROR.value(), "Failed to upload file: " + file.getOriginalFilename()); // Ошибка при загрузке
+        }
+    }
 
-        for (MultipartFile file : files) {
-            try (InputStream stream = file.getInputStream()) {
-                // Формируем полный путь к файлу
-                String filePath = userPrefix + path + file.getOriginalFilename();
-
-                // Загружаем файл в MinIO
-                minioClient.putObject(PutObjectArgs.builder()
-                        .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
-                        .object(filePath) // Указываем полный путь к файлу
-                        .stream(stream, file.getSize(), -1) // Передаем содержимое файла
-                        .build());
-
-                // Добавляем информацию о загруженном файле в результат
-                uploadedResources.add(ResourceInfo.builder()
-                        .path(path) // Путь к папке
-                        .name(file.getOriginalFilename()) // Имя файла
-                        .size(file.getSize()) // Размер файла
-                        .type("FILE") // Тип ресурса
-                        .build());
-            } catch (Exception e) {
-                throw new ValidationException("Failed to upload file: " + file.getOriginalFilename()); // Ошибка при загрузке
+    // Тип содержимого из метаданных объекта; нераспознаваемый тип отдаётся как application/octet-stream
+    private static String contentTypeOf(StorageObject stat) {
+        if (stat.contentType() != null) {
+            try {
+                return MediaType.parseMediaType(stat.contentType()).toString();
+            } catch (InvalidMediaTypeException e) {
+                log.debug("Некорректный тип содержимого {}: {}", stat.contentType(), e.getMessage());
             }
         }
-        return uploadedResources;
+        return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    // Проверка If-None-Match (слабое сравнение) и If-Modified-Since; при If-None-Match дата не учитывается (RFC 9110)
+    private boolean isNotModified(DownloadRequest request, String etag, ZonedDateTime lastModified) {
+        if (!request.ifNoneMatch().isEmpty()) {
+            String opaqueTag = stripWeakPrefix(etag);
+            return request.ifNoneMatch().stream()
+                    .anyMatch(tag -> tag.equals("*") || stripWeakPrefix(tag).equals(opaqueTag));
+        }
+        return request.ifModifiedSince() >= 0 && lastModified != null
+                && lastModified.toInstant().truncatedTo(ChronoUnit.SECONDS).toEpochMilli() <= request.ifModifiedSince();
+    }
+
+    private static String stripWeakPrefix(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    // Проверка If-Range: диапазон применяется, только если клиент докачивает ту же версию объекта
+    private boolean isIfRangeSatisfied(String ifRange, String etag, ZonedDateTime lastModified) {
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag); // Слабые ETag по RFC 9110 никогда не совпадают
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return lastModified != null && date.toInstant().equals(lastModified.toInstant().truncatedTo(ChronoUnit.SECONDS));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
     }
 
     // Формирование префикса пользователя
@@ -0,0 +1,111 @@
+package ru.anikson.cloudfilestorage.service.minio;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.anikson.cloudfilestorage.dto.resource.DeleteResult;
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
+import ru.anikson.cloudfilestorage.exception.ValidationException;
+import ru.anikson.cloudfilestorage.service.storage.StorageBackend;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Серверное перемещение объектов и папок.
+// Рекурсивный листинг папки потоком уходит в пул копирующих задач, а исходники удаляются пачками
+// только после того, как все копии подтверждены. Если копирование сорвалось, уже сделанные копии
+// откатываются, и папка остаётся на старом месте целиком.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MoveService {
+
+    private final StorageBackend storageBackend; // Хранилище содержимого файлов
+    private final BulkDeleteService bulkDeleteService; // Массовое удаление объектов
+    @Qualifier("minioTaskExecutor")
+    private final Executor minioTaskExecutor; // Пул для параллельных обращений к MinIO
+
+    @Value("${minio.move.parallelism}")
+    private int parallelism; // Сколько объектов одной папки копируются одновременно
+
+    // Перемещение одного объекта, возвращает его метаданные (без повторного stat после копирования)
+    public StorageObject moveObject(String fromObject, String toObject) {
+        try {
+            StorageObject stat = storageBackend.stat(fromObject);
+            storageBackend.copy(fromObject, toObject, stat.size());
+            storageBackend.delete(fromObject); // Удаляем исходный объект
+            return stat;
+        } catch (Exception e) {
+            throw new ValidationException("Failed to move resource from " + fromObject + " to " + toObject); // Ошибка при перемещении
+        }
+    }
+
+    // Перемещение всех объектов под префиксом, возвращает число перемещённых объектов
+    public long movePrefix(String fromPrefix, String toPrefix) {
+        if (toPrefix.startsWith(fromPrefix)) {
+            throw new ValidationException("Cannot move directory into itself: " + fromPrefix);
+        }
+
+        Queue<String> copiedSources = new ConcurrentLinkedQueue<>();
+        Queue<String> copiedTargets = new ConcurrentLinkedQueue<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<Void>> copies = new ArrayList<>();
+
+        try {
+            Iterator<StorageObject> objects = storageBackend.list(fromPrefix, null); // Все объекты папки
+
+            while (objects.hasNext()) {
+                if (failed.get()) {
+                    break; // После первой ошибки новые копии не запускаем
+                }
+                StorageObject item = objects.next();
+                String source = item.name();
+                String target = toPrefix + source.substring(fromPrefix.length());
+                long size = item.size();
+
+                permits.acquireUninterruptibly();
+                copies.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        storageBackend.copy(source, target, size);
+                        copiedSources.add(source);
+                        copiedTargets.add(target);
+                    } catch (Exception e) {
+                        log.error("Ошибка при копировании {} в {}: {}", source, target, e.getMessage());
+                        failed.set(true);
+                    }
+                }, minioTaskExecutor).whenComplete((ignored, e) -> permits.release()));
+            }
+        } catch (Exception e) {
+            log.error("Ошибка при получении содержимого {}: {}", fromPrefix, e.getMessage());
+            failed.set(true);
+        } finally {
+            CompletableFuture.allOf(copies.toArray(CompletableFuture[]::new)).join();
+        }
+
+        if (failed.get()) {
+            // Откат: удаляем уже сделанные копии, исходная папка не тронута
+            DeleteResult rollback = bulkDeleteService.deleteObjects(copiedTargets.iterator());
+            log.warn("Перемещение {} в {} отменено, откатено копий: {}, ошибок отката: {}",
+                    fromPrefix, toPrefix, rollback.deleted(), rollback.failed());
+            throw new ValidationException("Failed to move directory from " + fromPrefix + " to " + toPrefix);
+        }
+
+        // Все копии подтверждены — удаляем исходники пачками
+        DeleteResult removed = bulkDeleteService.deleteObjects(copiedSources.iterator());
+        if (removed.failed() > 0) {
+            log.warn("Перемещение {} в {}: не удалось удалить {} исходных объектов", fromPrefix, toPrefix, removed.failed());
+        }
+        log.info("Папка {} перемещена в {}: {} объектов", fromPrefix, toPrefix, copiedSources.size());
+        return copiedSources.size();
+    }
+}
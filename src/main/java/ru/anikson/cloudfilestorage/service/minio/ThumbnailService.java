@@ -0,0 +1,312 @@
+package ru.anikson.cloudfilestorage.service.minio;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import ru.anikson.cloudfilestorage.dto.resource.ThumbnailDownload;
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
+import ru.anikson.cloudfilestorage.exception.NotFoundException;
+import ru.anikson.cloudfilestorage.exception.ServiceUnavailableException;
+import ru.anikson.cloudfilestorage.service.metadata.ResourceMetadataService;
+import ru.anikson.cloudfilestorage.service.metadata.ResourcePaths;
+import ru.anikson.cloudfilestorage.service.storage.CompressionService;
+import ru.anikson.cloudfilestorage.service.storage.StorageBackend;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Миниатюры изображений.
+// Миниатюра — производный объект thumbnails/<префикс пользователя><путь файла>/<ETag исходника>-<размер>.jpg:
+// перезаписанный файл получает новую миниатюру, а все миниатюры файла или папки лежат под одним префиксом
+// и удаляются или переносятся вместе с ним.
+// Создаются в фоне после загрузки и лениво при первом запросе (для файлов, загруженных раньше);
+// одна и та же миниатюра одновременно генерируется только один раз.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ThumbnailService {
+
+    private static final String THUMBNAIL_PREFIX = "thumbnails/";
+    private static final String CONTENT_TYPE = "image/jpeg";
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp");
+
+    private final StorageBackend storageBackend; // Хранилище исходников и миниатюр
+    private final CompressionService compressionService; // Чтение сжатых исходников (BMP)
+    private final ResourceMetadataService resourceMetadataService; // Индекс метаданных (блобы)
+    private final BlobStoreService blobStoreService; // Ключи блобов
+    private final BulkDeleteService bulkDeleteService; // Удаление миниатюр вместе с файлами
+    private final MoveService moveService; // Перенос миниатюр вместе с файлами
+    @Qualifier("thumbnailTaskExecutor")
+    private final AsyncTaskExecutor thumbnailTaskExecutor; // Ограниченный пул генерации
+
+    private final Map<String, CompletableFuture<StorageObject>> inProgress = new ConcurrentHashMap<>();
+
+    @Value("${thumbnail.size}")
+    private int size; // Длинная сторона миниатюры, пикселей
+
+    @Value("${thumbnail.quality}")
+    private float quality; // Качество JPEG
+
+    @Value("${thumbnail.max-source-bytes}")
+    private long maxSourceBytes; // Файлы больше не обрабатываются
+
+    @Value("${thumbnail.max-source-pixels}")
+    private long maxSourcePixels; // Защита от изображений, которые не поместятся в память
+
+    @Value("${thumbnail.wait-timeout}")
+    private Duration waitTimeout; // Сколько запрос ждёт генерации своей миниатюры
+
+    public boolean isSupported(String path) {
+        String name = ResourcePaths.nameOf(path);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    // Фоновая генерация после загрузки; при переполнении очереди миниатюра будет создана по первому запросу
+    public void scheduleGeneration(String username, String path) {
+        if (!isSupported(path)) {
+            return;
+        }
+        try {
+            thumbnailTaskExecutor.execute(() -> {
+                try {
+                    ensureThumbnail(username, path);
+                } catch (RuntimeException e) {
+                    log.debug("Миниатюра {} пользователя {} не создана: {}", path, username, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Очередь миниатюр переполнена, {} пользователя {} пропущен", path, username);
+        }
+    }
+
+    // Миниатюра файла; если её ещё нет, запрос ждёт генерации (не дольше waitTimeout)
+    public ThumbnailDownload getThumbnail(String username, String path) {
+        ResourcePaths.requireSafe(path);
+        if (!isSupported(path)) {
+            throw new NotFoundException("Thumbnail is not available: " + path);
+        }
+        StorageObject thumbnail = awaitThumbnail(username, path);
+        return new ThumbnailDownload("\"" + versionOf(thumbnail.name()) + "\"", thumbnail.size(),
+                () -> storageBackend.get(thumbnail.name(), 0, -1));
+    }
+
+    // Удаление миниатюр файла или всей папки (путь папки оканчивается на "/"), в фоне
+    public void deleteThumbnails(String username, String path) {
+        String prefix = thumbnailPrefix(username, path);
+        runInBackground(() -> bulkDeleteService.deletePrefix(prefix), "удаление " + prefix);
+    }
+
+    // Перенос миниатюр вслед за файлом или папкой, в фоне: без этого миниатюры пришлось бы генерировать заново
+    public void moveThumbnails(String username, String from, String to) {
+        String fromPrefix = thumbnailPrefix(username, from);
+        String toPrefix = thumbnailPrefix(username, to);
+        runInBackground(() -> moveService.movePrefix(fromPrefix, toPrefix), "перенос " + fromPrefix);
+    }
+
+    private StorageObject awaitThumbnail(String username, String path) {
+        CompletableFuture<StorageObject> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> ensureThumbnail(username, path), thumbnailTaskExecutor);
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Thumbnail queue is full, try again later", 1);
+        }
+        try {
+            return future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Генерация продолжится в фоне, следующий запрос получит готовую миниатюру
+            throw new ServiceUnavailableException("Thumbnail is being generated, try again later", 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Thumbnail request was interrupted", 1);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+        }
+    }
+
+    // Выполняется в пуле миниатюр: готовая миниатюра находится одним stat, иначе создаётся
+    private StorageObject ensureThumbnail(String username, String path) {
+        String filePath = ResourcePaths.file(path);
+        String sourceObject = resourceMetadataService.findDigest(username, filePath)
+                .map(blobStoreService::objectName)
+                .orElse(getUserPrefix(username) + filePath);
+
+        StorageObject source;
+        try {
+            source = storageBackend.stat(sourceObject);
+        } catch (NoSuchFileException e) {
+            throw new NotFoundException("Resource not found: " + path);
+        } catch (IOException e) {
+            throw new ServiceUnavailableException("Storage is unavailable, try again later", 1);
+        }
+        if (source.decodedSize() > maxSourceBytes) {
+            throw new NotFoundException("Image is too large for a thumbnail: " + path);
+        }
+
+        String thumbnailObject = thumbnailPrefix(username, filePath) + source.etag() + "-" + size + ".jpg";
+        try {
+            return storageBackend.stat(thumbnailObject);
+        } catch (NoSuchFileException e) {
+            // Миниатюры ещё нет
+        } catch (IOException e) {
+            throw new ServiceUnavailableException("Storage is unavailable, try again later", 1);
+        }
+
+        CompletableFuture<StorageObject> generation = new CompletableFuture<>();
+        CompletableFuture<StorageObject> existing = inProgress.putIfAbsent(thumbnailObject, generation);
+        if (existing != null) {
+            return existing.join(); // Эту миниатюру уже создаёт другой поток
+        }
+        try {
+            StorageObject thumbnail = generate(source, thumbnailObject, path);
+            generation.complete(thumbnail);
+            return thumbnail;
+        } catch (RuntimeException e) {
+            generation.completeExceptionally(e);
+            throw e;
+        } finally {
+            inProgress.remove(thumbnailObject);
+        }
+    }
+
+    private StorageObject generate(StorageObject source, String thumbnailObject, String path) {
+        byte[] jpeg;
+        try (InputStream stream = compressionService.open(source, 0, -1)) {
+            BufferedImage image = read(stream, path);
+            jpeg = encode(resize(image));
+        } catch (IOException e) {
+            throw new NotFoundException("Thumbnail is not available: " + path);
+        }
+        try {
+            StorageObject stored = storageBackend.put(thumbnailObject, new ByteArrayInputStream(jpeg), jpeg.length, CONTENT_TYPE);
+            log.debug("Миниатюра {} создана ({} байт)", thumbnailObject, jpeg.length);
+            return stored;
+        } catch (IOException e) {
+            throw new ServiceUnavailableException("Storage is unavailable, try again later", 1);
+        }
+    }
+
+    // Чтение изображения с прореживанием: большой снимок не разворачивается в памяти целиком
+    private BufferedImage read(InputStream stream, String path) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(stream)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format: " + path);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxSourcePixels) {
+                    throw new IOException("Image is too large: " + width + "x" + height);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / (size * 2)); // Запас вдвое — для качества уменьшения
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Уменьшение до size по длинной стороне (без увеличения), прозрачность заливается белым
+    private BufferedImage resize(BufferedImage image) {
+        double scale = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return thumbnail;
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    private void runInBackground(Runnable task, String description) {
+        try {
+            thumbnailTaskExecutor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.warn("Миниатюры: {} не выполнено: {}", description, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Очередь миниатюр переполнена, {} пропущено", description);
+        }
+    }
+
+    // Префикс миниатюр файла (thumbnails/.../файл/) или папки (thumbnails/.../папка/)
+    private String thumbnailPrefix(String username, String path) {
+        String resourcePath = ResourcePaths.isDirectory(ResourcePaths.file(path))
+                ? ResourcePaths.directory(path)
+                : ResourcePaths.file(path) + "/";
+        return THUMBNAIL_PREFIX + getUserPrefix(username) + resourcePath;
+    }
+
+    // Версия миниатюры — имя её объекта без пути и расширения (ETag исходника и размер)
+    private static String versionOf(String thumbnailObject) {
+        String name = thumbnailObject.substring(thumbnailObject.lastIndexOf('/') + 1);
+        return name.substring(0, name.length() - ".jpg".length());
+    }
+
+    // Формирование префикса пользователя
+    private String getUserPrefix(String username) {
+        return "user-" + username + "-files/"; // Префикс в формате user-${username}-files/
+    }
+}
@@ -0,0 +1,199 @@
+package ru.anikson.cloudfilestorage.service.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Прозрачное сжатие объектов (режим storage.compression.enabled).
+// При загрузке начало файла пробно сжимается; если образец сжимается хорошо (текст, логи, CSV, JSON),
+// весь поток сжимается gzip на лету во временный файл и записывается в хранилище с кодеком в метаданных.
+// gzip выбран потому, что его понимает любой HTTP-клиент: сжатый объект отдаётся как есть с Content-Encoding: gzip.
+// Читатели получают исходное содержимое через open; объекты, записанные без сжатия, читаются как раньше.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CompressionService {
+
+    public static final String GZIP = "gzip";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Форматы, которые уже сжаты: пробное сжатие для них — лишняя работа
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "gz", "tgz", "zip", "bz2", "xz", "7z", "rar", "zst", "jpg", "jpeg", "png", "gif", "webp",
+            "mp3", "mp4", "mkv", "avi", "mov", "pdf", "docx", "xlsx", "pptx", "jar");
+
+    private final StorageBackend storageBackend; // Хранилище содержимого файлов
+    private final MeterRegistry meterRegistry; // Счётчики сэкономленных байт
+
+    @Value("${storage.compression.enabled}")
+    private boolean enabled;
+
+    @Value("${storage.compression.level}")
+    private int level; // Уровень Deflater: 1 — самый быстрый
+
+    @Value("${storage.compression.min-size}")
+    private long minSize; // Маленькие файлы не сжимаются: выигрыш меньше накладных расходов
+
+    @Value("${storage.compression.sample-bytes}")
+    private int sampleBytes; // Объём образца для пробного сжатия
+
+    @Value("${storage.compression.max-ratio}")
+    private double maxRatio; // Файл сжимается, если образец сжался хотя бы до этой доли
+
+    private Counter savedBytes;
+
+    @PostConstruct
+    void init() {
+        savedBytes = Counter.builder("storage.compression.saved")
+                .baseUnit("bytes")
+                .description("Bytes saved in storage by transparent compression")
+                .register(meterRegistry);
+    }
+
+    // Запись объекта: сжатым, если режим включён и содержимое сжимаемо, иначе как есть
+    public StorageObject put(String objectName, InputStream stream, long size, String contentType) throws IOException {
+        if (!enabled || size < minSize || isCompressedFormat(objectName) || !storageBackend.supportsEncoding()) {
+            return storageBackend.put(objectName, stream, size, contentType);
+        }
+        BufferedInputStream buffered = new BufferedInputStream(stream, Math.max(BUFFER_SIZE, sampleBytes));
+        if (!isCompressible(buffered)) {
+            return storageBackend.put(objectName, buffered, size, contentType);
+        }
+
+        Path temp = Files.createTempFile("cfs-compress-", ".gz");
+        try {
+            long read;
+            try (OutputStream out = gzipOutputStream(Files.newOutputStream(temp))) {
+                read = buffered.transferTo(out);
+            }
+            if (read != size) {
+                throw new EOFException("Stream ended after " + read + " of " + size + " bytes");
+            }
+            long compressedSize = Files.size(temp);
+            try (InputStream compressed = Files.newInputStream(temp)) {
+                StorageObject stored = storageBackend.putEncoded(objectName, compressed, compressedSize, contentType, GZIP, size);
+                savedBytes.increment(Math.max(0, size - compressedSize));
+                log.debug("Объект {} сжат: {} -> {} байт", objectName, size, compressedSize);
+                return stored;
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Чтение диапазона исходного содержимого; length < 0 — до конца.
+    // Сжатый объект распаковывается с начала, поэтому диапазон в его середине стоит чтения всего, что перед ним.
+    public InputStream open(StorageObject object, long offset, long length) throws IOException {
+        if (!object.isEncoded()) {
+            return storageBackend.get(object.name(), offset, length);
+        }
+        if (!GZIP.equals(object.encoding())) {
+            throw new IOException("Unsupported encoding " + object.encoding() + " of " + object.name());
+        }
+        InputStream stream = new GZIPInputStream(storageBackend.get(object.name(), 0, -1), BUFFER_SIZE);
+        try {
+            stream.skipNBytes(offset);
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+        return length < 0 ? stream : new LimitedInputStream(stream, length);
+    }
+
+    // Полное исходное содержимое объекта, о котором ещё ничего не известно (кодек узнаётся через stat)
+    public InputStream open(String objectName) throws IOException {
+        return open(storageBackend.stat(objectName), 0, -1);
+    }
+
+    // Пробное сжатие начала потока; поток возвращается к началу
+    private boolean isCompressible(BufferedInputStream stream) throws IOException {
+        stream.mark(sampleBytes);
+        byte[] sample = stream.readNBytes(sampleBytes);
+        stream.reset();
+        if (sample.length == 0) {
+            return false;
+        }
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(sample);
+            deflater.finish();
+            byte[] output = new byte[BUFFER_SIZE];
+            long compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(output);
+            }
+            return compressed <= sample.length * maxRatio;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private DeflaterOutputStream gzipOutputStream(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out, BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    private static boolean isCompressedFormat(String objectName) {
+        int dot = objectName.lastIndexOf('.');
+        return dot > objectName.lastIndexOf('/')
+                && COMPRESSED_EXTENSIONS.contains(objectName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    // Первые length байт распакованного потока
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
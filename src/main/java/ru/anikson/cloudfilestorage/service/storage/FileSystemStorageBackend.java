@@ -0,0 +1,638 @@
+package ru.anikson.cloudfilestorage.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
+import ru.anikson.cloudfilestorage.dto.storage.UploadedPart;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Хранилище на локальном диске для одноузловых установок без MinIO.
+// Ключ объекта — путь от корня хранилища (user-<name>-files/... — каталоги), маркер папки — каталог.
+// Запись идёт во временный файл на том же диске и атомарно переименовывается на место,
+// поэтому читатели никогда не видят недописанный объект. Копирование и сборка частей — FileChannel.transferTo
+// без прохода данных через память приложения, скачивание отдаётся Tomcat через sendfile (см. localFile).
+// Каталоги, созданные неявно (родители файла) или чей маркер удалён при непустом содержимом, исчезают
+// вместе с последним файлом — как префиксы в S3. Этот признак хранится в памяти: после перезапуска
+// такие каталоги остаются обычными пустыми папками.
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "filesystem")
+@Slf4j
+public class FileSystemStorageBackend implements StorageBackend {
+
+    private static final String STAGING_DIRECTORY = ".staging"; // Временные файлы и части загрузок
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final String UPLOAD_OBJECT_FILE = "object"; // Ключ объекта multipart-загрузки
+    private static final String PART_FILE_PREFIX = "part-";
+    private static final String ENCODING_ATTRIBUTE = "cfs.encoding"; // Кодек сжатого объекта (расширенный атрибут файла)
+    private static final String DECODED_SIZE_ATTRIBUTE = "cfs.decoded-size"; // Размер до сжатия
+
+    @Value("${storage.filesystem.root-directory}")
+    private Path rootDirectory;
+
+    private Path root;
+    private Path staging;
+    private boolean userAttributes; // Поддерживает ли файловая система расширенные атрибуты (для сжатых объектов)
+    private final Set<Path> implicitDirectories = ConcurrentHashMap.newKeySet(); // Каталоги без маркера
+
+    // Создание корня и очистка временных файлов, оставшихся после аварийной остановки
+    @Override
+    public void initialize() throws IOException {
+        root = Files.createDirectories(rootDirectory).toRealPath();
+        staging = Files.createDirectories(root.resolve(STAGING_DIRECTORY));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(staging, "*" + TEMP_FILE_SUFFIX)) {
+            for (Path temp : stream) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        userAttributes = Files.getFileStore(root).supportsFileAttributeView(UserDefinedFileAttributeView.class);
+        log.info("Используется файловое хранилище в {}", root);
+    }
+
+    @Override
+    public StorageObject stat(String objectName) throws IOException {
+        Path path = resolve(objectName);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!matchesKey(objectName, path, attributes)) {
+            throw new NoSuchFileException(objectName);
+        }
+        StorageObject object = toStorageObject(objectName, attributes, attributes.isDirectory() ? null : Files.probeContentType(path));
+        return attributes.isRegularFile() ? withEncoding(object, path) : object;
+    }
+
+    // Обход каталогов в глубину; дети каждого каталога сортируются по ключу, что даёт общий порядок ключей
+    @Override
+    public Iterator<StorageObject> list(String prefix, String startAfter) {
+        String baseKey = prefix.substring(0, prefix.lastIndexOf('/') + 1); // Самый глубокий каталог, общий для всех ключей
+        return new ListingIterator(baseKey, prefix, startAfter);
+    }
+
+    @Override
+    public InputStream get(String objectName, long offset, long length) throws IOException {
+        Path path = resolve(objectName);
+        if (objectName.endsWith("/")) {
+            stat(objectName); // Маркер папки — пустой объект
+            return InputStream.nullInputStream();
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+            InputStream stream = Channels.newInputStream(channel);
+            return length < 0 ? stream : new RangeInputStream(stream, length);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Содержимое переливается в файл через transferFrom: из FileInputStream (временный файл multipart) —
+    // напрямую между файлами, из остальных потоков — через временный direct-буфер JDK
+    @Override
+    public StorageObject put(String objectName, InputStream stream, long size, String contentType) throws IOException {
+        Path target = resolve(objectName);
+        if (objectName.endsWith("/")) {
+            createMarker(target);
+            return stat(objectName);
+        }
+
+        Path temp = Files.createTempFile(staging, "put-", TEMP_FILE_SUFFIX);
+        try {
+            write(temp, stream, size);
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return toStorageObject(objectName, Files.readAttributes(target, BasicFileAttributes.class), contentType);
+    }
+
+    @Override
+    public StorageObject putEncoded(String objectName, InputStream stream, long size, String contentType,
+                                    String encoding, long decodedSize) throws IOException {
+        if (!userAttributes || objectName.endsWith("/")) {
+            throw new IOException("Encoded objects are not supported here: " + objectName);
+        }
+        Path target = resolve(objectName);
+        Path temp = Files.createTempFile(staging, "put-", TEMP_FILE_SUFFIX);
+        try {
+            write(temp, stream, size);
+            writeEncoding(temp, encoding, decodedSize); // Атрибуты переезжают вместе с файлом при переименовании
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return withEncoding(toStorageObject(objectName, Files.readAttributes(target, BasicFileAttributes.class), contentType), target);
+    }
+
+    @Override
+    public boolean supportsEncoding() {
+        return userAttributes;
+    }
+
+    @Override
+    public void copy(String sourceObject, String targetObject, long size) throws IOException {
+        Path source = resolve(sourceObject);
+        Path target = resolve(targetObject);
+        if (sourceObject.endsWith("/")) {
+            stat(sourceObject);
+            createMarker(target);
+            return;
+        }
+
+        Path temp = Files.createTempFile(staging, "copy-", TEMP_FILE_SUFFIX);
+        try {
+            try (FileChannel from = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel to = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                transfer(from, 0, from.size(), to);
+            }
+            StorageObject copied = stat(sourceObject);
+            if (copied.isEncoded()) {
+                writeEncoding(temp, copied.encoding(), copied.decodedSize());
+            }
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void delete(String objectName) throws IOException {
+        Path path = resolve(objectName);
+        if (objectName.endsWith("/")) {
+            if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) || path.equals(root)) {
+                return;
+            }
+            try {
+                Files.delete(path);
+            } catch (DirectoryNotEmptyException e) {
+                implicitDirectories.add(path); // Префикс живёт, пока в нём есть объекты
+                return;
+            } catch (NoSuchFileException e) {
+                return;
+            }
+            implicitDirectories.remove(path);
+            pruneDirectories(path.getParent());
+            return;
+        }
+        if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) && Files.deleteIfExists(path)) {
+            pruneDirectories(path.getParent());
+        }
+    }
+
+    @Override
+    public List<String> deleteAll(List<String> objectNames) {
+        List<String> failed = new ArrayList<>();
+        for (String objectName : objectNames) {
+            try {
+                delete(objectName);
+            } catch (IOException e) {
+                log.warn("Не удалось удалить объект {}: {}", objectName, e.getMessage());
+                failed.add(objectName);
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public String createMultipartUpload(String objectName) throws IOException {
+        resolve(objectName);
+        String uploadId = UUID.randomUUID().toString();
+        Path uploadDirectory = Files.createDirectory(staging.resolve(uploadId));
+        Files.writeString(uploadDirectory.resolve(UPLOAD_OBJECT_FILE), objectName);
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(String objectName, String uploadId, int partNumber, InputStream data, long length) throws IOException {
+        Path uploadDirectory = findUpload(objectName, uploadId);
+        Path temp = Files.createTempFile(staging, "part-", TEMP_FILE_SUFFIX);
+        try {
+            write(temp, data, length);
+            Path part = uploadDirectory.resolve(partFileName(partNumber));
+            Files.move(temp, part, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING); // Повтор части заменяет её
+            return etag(Files.readAttributes(part, BasicFileAttributes.class));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Диапазон источника переливается в файл части через transferTo, не проходя через память приложения
+    @Override
+    public String uploadPartCopy(String objectName, String uploadId, int partNumber,
+                                 String sourceObject, long offset, long length) throws IOException {
+        Path uploadDirectory = findUpload(objectName, uploadId);
+        Path source = resolve(sourceObject);
+        Path temp = Files.createTempFile(staging, "part-", TEMP_FILE_SUFFIX);
+        try {
+            try (FileChannel from = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel to = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                if (offset < 0 || length <= 0 || offset + length > from.size()) {
+                    throw new IOException("Range " + offset + "+" + length + " is outside of " + sourceObject);
+                }
+                transfer(from, offset, length, to);
+            }
+            Path part = uploadDirectory.resolve(partFileName(partNumber));
+            Files.move(temp, part, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return etag(Files.readAttributes(part, BasicFileAttributes.class));
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public List<UploadedPart> listParts(String objectName, String uploadId) throws IOException {
+        Path uploadDirectory = findUpload(objectName, uploadId);
+        List<UploadedPart> parts = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(uploadDirectory, PART_FILE_PREFIX + "*")) {
+            for (Path part : stream) {
+                int partNumber = Integer.parseInt(part.getFileName().toString().substring(PART_FILE_PREFIX.length()));
+                parts.add(new UploadedPart(partNumber, etag(Files.readAttributes(part, BasicFileAttributes.class))));
+            }
+        }
+        parts.sort(Comparator.comparingInt(UploadedPart::partNumber));
+        return parts;
+    }
+
+    // Части склеиваются во временный файл через transferTo и переименовываются на место одним шагом
+    @Override
+    public StorageObject completeMultipartUpload(String objectName, String uploadId, List<UploadedPart> parts) throws IOException {
+        Path uploadDirectory = findUpload(objectName, uploadId);
+        Path target = resolve(objectName);
+        Path temp = Files.createTempFile(staging, "complete-", TEMP_FILE_SUFFIX);
+        try {
+            try (FileChannel to = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (UploadedPart part : parts) {
+                    Path partFile = uploadDirectory.resolve(partFileName(part.partNumber()));
+                    if (!Files.isRegularFile(partFile)
+                            || !etag(Files.readAttributes(partFile, BasicFileAttributes.class)).equals(part.etag())) {
+                        throw new IOException("Invalid part " + part.partNumber() + " of upload " + uploadId);
+                    }
+                    try (FileChannel from = FileChannel.open(partFile, StandardOpenOption.READ)) {
+                        transfer(from, 0, from.size(), to);
+                    }
+                }
+            }
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        deleteUpload(uploadDirectory);
+        return toStorageObject(objectName, Files.readAttributes(target, BasicFileAttributes.class), null);
+    }
+
+    @Override
+    public void abortMultipartUpload(String objectName, String uploadId) throws IOException {
+        deleteUpload(findUpload(objectName, uploadId));
+    }
+
+    @Override
+    public Optional<Path> localFile(String objectName) throws IOException {
+        Path path = resolve(objectName);
+        return Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) ? Optional.of(path.toRealPath()) : Optional.empty();
+    }
+
+    // Путь объекта; ключи вне корня и служебный каталог недоступны.
+    // Ключ не выходит за свой каталог верхнего уровня (user-<name>-files/ и т. п.): user-alice-files/../user-bob-files/x
+    // остаётся внутри корня, но указывает в чужой каталог, поэтому отклоняется
+    private Path resolve(String objectName) throws IOException {
+        int slash = objectName.indexOf('/');
+        String topLevel = slash >= 0 ? objectName.substring(0, slash) : objectName;
+        Path scope = root.resolve(topLevel).normalize();
+        Path path = root.resolve(objectName).normalize();
+        if (objectName.startsWith("/") || topLevel.equals(".") || topLevel.equals("..")
+                || !path.startsWith(root) || !path.startsWith(scope) || path.startsWith(staging)) {
+            throw new IOException("Invalid object name: " + objectName);
+        }
+        return path;
+    }
+
+    private boolean matchesKey(String objectName, Path path, BasicFileAttributes attributes) {
+        if (objectName.endsWith("/")) {
+            return attributes.isDirectory() && !implicitDirectories.contains(path);
+        }
+        return attributes.isRegularFile();
+    }
+
+    private static void write(Path file, InputStream stream, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ReadableByteChannel source = Channels.newChannel(stream);
+            long position = 0;
+            while (position < size) {
+                long transferred = channel.transferFrom(source, position, size - position);
+                if (transferred <= 0) {
+                    throw new EOFException("Stream ended after " + position + " of " + size + " bytes");
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private static void transfer(FileChannel from, long start, long count, FileChannel to) throws IOException {
+        long position = 0;
+        while (position < count) {
+            long transferred = from.transferTo(start + position, count - position, to);
+            if (transferred <= 0) {
+                throw new EOFException("File ended after " + position + " of " + count + " bytes");
+            }
+            position += transferred;
+        }
+    }
+
+    // Атомарная замена объекта; если родительский каталог исчез вместе с последним файлом, он создаётся заново
+    private void moveIntoPlace(Path temp, Path target) throws IOException {
+        createParents(target.getParent());
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            createParents(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void createMarker(Path directory) throws IOException {
+        createParents(directory.getParent());
+        try {
+            Files.createDirectory(directory);
+        } catch (FileAlreadyExistsException e) {
+            if (!Files.isDirectory(directory)) {
+                throw e;
+            }
+        }
+        implicitDirectories.remove(directory);
+    }
+
+    // Недостающие каталоги над объектом создаются неявными, как префиксы S3
+    private void createParents(Path directory) throws IOException {
+        Deque<Path> missing = new ArrayDeque<>();
+        for (Path current = directory; !current.equals(root) && !Files.isDirectory(current); current = current.getParent()) {
+            missing.push(current);
+        }
+        for (Path current : missing) {
+            try {
+                Files.createDirectory(current);
+                implicitDirectories.add(current);
+            } catch (FileAlreadyExistsException e) {
+                // Создан параллельным запросом
+            }
+        }
+    }
+
+    // Удаление опустевших неявных каталогов вверх по дереву
+    private void pruneDirectories(Path directory) {
+        for (Path current = directory; !current.equals(root) && implicitDirectories.contains(current); current = current.getParent()) {
+            try {
+                Files.delete(current);
+            } catch (IOException e) {
+                return; // Каталог не пуст или уже удалён
+            }
+            implicitDirectories.remove(current);
+        }
+    }
+
+    private Path findUpload(String objectName, String uploadId) throws IOException {
+        try {
+            Path uploadDirectory = staging.resolve(UUID.fromString(uploadId).toString());
+            if (objectName.equals(Files.readString(uploadDirectory.resolve(UPLOAD_OBJECT_FILE)))) {
+                return uploadDirectory;
+            }
+        } catch (IllegalArgumentException | NoSuchFileException e) {
+            // Неизвестная загрузка
+        }
+        throw new NoSuchFileException(objectName, null, "No such upload: " + uploadId);
+    }
+
+    private static void deleteUpload(Path uploadDirectory) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(uploadDirectory)) {
+            for (Path file : stream) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(uploadDirectory);
+    }
+
+    private static String partFileName(int partNumber) {
+        return PART_FILE_PREFIX + String.format("%05d", partNumber);
+    }
+
+    // ETag по времени изменения и размеру (как у nginx): меняется при каждой перезаписи и не требует чтения файла
+    private static String etag(BasicFileAttributes attributes) {
+        return Long.toHexString(attributes.lastModifiedTime().toMillis()) + "-" + Long.toHexString(attributes.size());
+    }
+
+    private void writeEncoding(Path file, String encoding, long decodedSize) throws IOException {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class);
+        view.write(ENCODING_ATTRIBUTE, StandardCharsets.UTF_8.encode(encoding));
+        view.write(DECODED_SIZE_ATTRIBUTE, StandardCharsets.UTF_8.encode(String.valueOf(decodedSize)));
+    }
+
+    // Кодек и исходный размер из расширенных атрибутов; у несжатого файла их нет
+    private StorageObject withEncoding(StorageObject object, Path file) throws IOException {
+        if (!userAttributes) {
+            return object;
+        }
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file, UserDefinedFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (!view.list().contains(ENCODING_ATTRIBUTE)) {
+            return object;
+        }
+        return new StorageObject(object.name(), object.size(), object.etag(), object.lastModified(), object.contentType(),
+                readAttribute(view, ENCODING_ATTRIBUTE), Long.parseLong(readAttribute(view, DECODED_SIZE_ATTRIBUTE)));
+    }
+
+    private static String readAttribute(UserDefinedFileAttributeView view, String name) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(view.size(name));
+        view.read(name, buffer);
+        return StandardCharsets.UTF_8.decode(buffer.flip()).toString();
+    }
+
+    private static StorageObject toStorageObject(String objectName, BasicFileAttributes attributes, String contentType) {
+        return new StorageObject(objectName, attributes.isDirectory() ? 0 : attributes.size(), etag(attributes),
+                ZonedDateTime.ofInstant(attributes.lastModifiedTime().toInstant(), ZoneOffset.UTC), contentType);
+    }
+
+    private record Entry(String key, Path path, BasicFileAttributes attributes) {
+    }
+
+    // Ленивый листинг: каталог читается через DirectoryStream, только когда обход до него доходит
+    private class ListingIterator implements Iterator<StorageObject> {
+
+        private final String prefix;
+        private final String startAfter;
+        private final Deque<Iterator<Entry>> levels = new ArrayDeque<>();
+        private StorageObject next;
+
+        private ListingIterator(String baseKey, String prefix, String startAfter) {
+            this.prefix = prefix;
+            this.startAfter = startAfter;
+            try {
+                Path base = resolve(baseKey);
+                if (!Files.isDirectory(base, LinkOption.NOFOLLOW_LINKS)) {
+                    return;
+                }
+                levels.push(readChildren(base, baseKey).iterator());
+                // Маркер самого каталога тоже попадает под префикс
+                if (!baseKey.isEmpty() && baseKey.equals(prefix) && isAfterStart(baseKey) && !implicitDirectories.contains(base)) {
+                    next = toStorageObject(baseKey, Files.readAttributes(base, BasicFileAttributes.class), null);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = advance();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public StorageObject next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            StorageObject result = next;
+            next = null;
+            return result;
+        }
+
+        private StorageObject advance() throws IOException {
+            while (!levels.isEmpty()) {
+                Iterator<Entry> level = levels.peek();
+                if (!level.hasNext()) {
+                    levels.pop();
+                    continue;
+                }
+                Entry entry = level.next();
+                if (!entry.key().startsWith(prefix)) {
+                    continue;
+                }
+                if (entry.attributes().isDirectory()) {
+                    // Поддерево пропускается целиком, если все его ключи не больше startAfter
+                    if (startAfter == null || startAfter.startsWith(entry.key()) || entry.key().compareTo(startAfter) > 0) {
+                        levels.push(readChildren(entry.path(), entry.key()).iterator());
+                    }
+                    if (isAfterStart(entry.key()) && !implicitDirectories.contains(entry.path())) {
+                        return toStorageObject(entry.key(), entry.attributes(), null);
+                    }
+                } else if (isAfterStart(entry.key())) {
+                    return withEncoding(toStorageObject(entry.key(), entry.attributes(), null), entry.path());
+                }
+            }
+            return null;
+        }
+
+        private boolean isAfterStart(String key) {
+            return startAfter == null || key.compareTo(startAfter) > 0;
+        }
+
+        private List<Entry> readChildren(Path directory, String directoryKey) throws IOException {
+            List<Entry> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    if (child.equals(staging)) {
+                        continue;
+                    }
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if (!attributes.isDirectory() && !attributes.isRegularFile()) {
+                            continue; // Ссылки и специальные файлы не являются объектами
+                        }
+                        children.add(new Entry(directoryKey + child.getFileName() + (attributes.isDirectory() ? "/" : ""), child, attributes));
+                    } catch (NoSuchFileException e) {
+                        // Удалён во время обхода
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                return children; // Каталог удалён во время обхода
+            }
+            children.sort(Comparator.comparing(Entry::key));
+            return children;
+        }
+    }
+
+    // Чтение диапазона: не больше remaining байт от текущей позиции канала
+    private static class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
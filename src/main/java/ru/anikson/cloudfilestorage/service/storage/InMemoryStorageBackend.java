@@ -0,0 +1,216 @@
+package ru.anikson.cloudfilestorage.service.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
+import ru.anikson.cloudfilestorage.dto.storage.UploadedPart;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Хранилище в памяти процесса: для локального запуска, нагрузочных тестов и бенчмарков без MinIO.
+// Содержимое не переживает перезапуск; объекты больше 2 ГБ не поддерживаются.
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "memory")
+@Slf4j
+public class InMemoryStorageBackend implements StorageBackend {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    // Отсортированная карта даёт листинг префикса в порядке ключей, как у S3
+    private final ConcurrentSkipListMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+    private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+
+    @Override
+    public void initialize() {
+        log.info("Используется хранилище в памяти");
+    }
+
+    @Override
+    public StorageObject stat(String objectName) throws IOException {
+        return toStorageObject(objectName, find(objectName));
+    }
+
+    @Override
+    public Iterator<StorageObject> list(String prefix, String startAfter) {
+        boolean fromPrefix = startAfter == null || startAfter.compareTo(prefix) < 0;
+        NavigableMap<String, StoredObject> range = objects.subMap(
+                fromPrefix ? prefix : startAfter, fromPrefix,
+                prefix + Character.MAX_VALUE, false);
+        return range.entrySet().stream()
+                .map(entry -> toStorageObject(entry.getKey(), entry.getValue()))
+                .iterator();
+    }
+
+    @Override
+    public InputStream get(String objectName, long offset, long length) throws IOException {
+        byte[] data = find(objectName).data();
+        int from = (int) Math.min(offset, data.length);
+        int count = length < 0 ? data.length - from : (int) Math.min(length, data.length - from);
+        return new ByteArrayInputStream(data, from, count);
+    }
+
+    @Override
+    public StorageObject put(String objectName, InputStream stream, long size, String contentType) throws IOException {
+        byte[] data = readFully(stream, size);
+        StoredObject object = new StoredObject(data, md5(data), ZonedDateTime.now(), contentType, null, data.length);
+        objects.put(objectName, object);
+        return toStorageObject(objectName, object);
+    }
+
+    @Override
+    public StorageObject putEncoded(String objectName, InputStream stream, long size, String contentType,
+                                    String encoding, long decodedSize) throws IOException {
+        byte[] data = readFully(stream, size);
+        StoredObject object = new StoredObject(data, md5(data), ZonedDateTime.now(), contentType, encoding, decodedSize);
+        objects.put(objectName, object);
+        return toStorageObject(objectName, object);
+    }
+
+    @Override
+    public void copy(String sourceObject, String targetObject, long size) throws IOException {
+        StoredObject source = find(sourceObject);
+        objects.put(targetObject, new StoredObject(source.data(), source.etag(), ZonedDateTime.now(), source.contentType(),
+                source.encoding(), source.decodedSize()));
+    }
+
+    @Override
+    public void delete(String objectName) {
+        objects.remove(objectName);
+    }
+
+    @Override
+    public List<String> deleteAll(List<String> objectNames) {
+        objectNames.forEach(objects::remove);
+        return List.of();
+    }
+
+    @Override
+    public String createMultipartUpload(String objectName) {
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new MultipartUpload(objectName, new ConcurrentSkipListMap<>()));
+        return uploadId;
+    }
+
+    @Override
+    public String uploadPart(String objectName, String uploadId, int partNumber, InputStream data, long length) throws IOException {
+        byte[] content = readFully(data, length);
+        String etag = md5(content);
+        findUpload(objectName, uploadId).parts().put(partNumber, new StoredPart(content, etag));
+        return etag;
+    }
+
+    @Override
+    public String uploadPartCopy(String objectName, String uploadId, int partNumber,
+                                 String sourceObject, long offset, long length) throws IOException {
+        MultipartUpload upload = findUpload(objectName, uploadId);
+        byte[] source = find(sourceObject).data();
+        if (offset < 0 || length <= 0 || offset + length > source.length) {
+            throw new IOException("Range " + offset + "+" + length + " is outside of " + sourceObject);
+        }
+        byte[] content = Arrays.copyOfRange(source, (int) offset, (int) (offset + length));
+        String etag = md5(content);
+        upload.parts().put(partNumber, new StoredPart(content, etag));
+        return etag;
+    }
+
+    @Override
+    public List<UploadedPart> listParts(String objectName, String uploadId) throws IOException {
+        List<UploadedPart> parts = new ArrayList<>();
+        findUpload(objectName, uploadId).parts()
+                .forEach((partNumber, part) -> parts.add(new UploadedPart(partNumber, part.etag())));
+        return parts;
+    }
+
+    @Override
+    public StorageObject completeMultipartUpload(String objectName, String uploadId, List<UploadedPart> parts) throws IOException {
+        MultipartUpload upload = findUpload(objectName, uploadId);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (UploadedPart part : parts) {
+            StoredPart stored = upload.parts().get(part.partNumber());
+            if (stored == null || !stored.etag().equals(part.etag())) {
+                throw new IOException("Invalid part " + part.partNumber() + " of upload " + uploadId);
+            }
+            content.write(stored.data());
+        }
+        byte[] data = content.toByteArray();
+        StoredObject object = new StoredObject(data, md5(data) + "-" + parts.size(), ZonedDateTime.now(), null, null, data.length);
+        objects.put(objectName, object);
+        uploads.remove(uploadId);
+        return toStorageObject(objectName, object);
+    }
+
+    @Override
+    public void abortMultipartUpload(String objectName, String uploadId) throws IOException {
+        findUpload(objectName, uploadId);
+        uploads.remove(uploadId);
+    }
+
+    private StoredObject find(String objectName) throws NoSuchFileException {
+        StoredObject object = objects.get(objectName);
+        if (object == null) {
+            throw new NoSuchFileException(objectName);
+        }
+        return object;
+    }
+
+    private MultipartUpload findUpload(String objectName, String uploadId) throws NoSuchFileException {
+        MultipartUpload upload = uploads.get(uploadId);
+        if (upload == null || !upload.objectName().equals(objectName)) {
+            throw new NoSuchFileException(objectName, null, "No such upload: " + uploadId);
+        }
+        return upload;
+    }
+
+    private static byte[] readFully(InputStream stream, long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Object is too large for in-memory storage: " + size);
+        }
+        byte[] data = stream.readNBytes((int) size);
+        if (data.length < size) {
+            throw new EOFException("Stream ended after " + data.length + " of " + size + " bytes");
+        }
+        return data;
+    }
+
+    private static String md5(byte[] data) {
+        try {
+            return HEX.formatHex(MessageDigest.getInstance("MD5").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static StorageObject toStorageObject(String objectName, StoredObject object) {
+        return new StorageObject(objectName, object.data().length, object.etag(), object.lastModified(), object.contentType(),
+                object.encoding(), object.decodedSize());
+    }
+
+    private record StoredObject(byte[] data, String etag, ZonedDateTime lastModified, String contentType,
+                                String encoding, long decodedSize) {
+    }
+
+    private record StoredPart(byte[] data, String etag) {
+    }
+
+    private record MultipartUpload(String objectName, ConcurrentSkipListMap<Integer, StoredPart> parts) {
+    }
+}
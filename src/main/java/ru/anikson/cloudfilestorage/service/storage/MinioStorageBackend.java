@@ -0,0 +1,354 @@
+package ru.anikson.cloudfilestorage.service.storage;
+
+import io.minio.BucketExistsArgs;
+import io.minio.ComposeObjectArgs;
+import io.minio.ComposeSource;
+import io.minio.CopyObjectArgs;
+import io.minio.CopySource;
+import io.minio.GetObjectArgs;
+import io.minio.ListObjectsArgs;
+import io.minio.MakeBucketArgs;
+import io.minio.MinioClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.MinioException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import io.minio.messages.Part;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.anikson.cloudfilestorage.config.minio.MinioBucketConfiguration;
+import ru.anikson.cloudfilestorage.config.minio.MultipartMinioClient;
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
+import ru.anikson.cloudfilestorage.dto.storage.UploadedPart;
+import ru.anikson.cloudfilestorage.exception.ServiceUnavailableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Хранилище в MinIO (S3) — реализация по умолчанию.
+// Число одновременных запросов к MinIO с узла ограничено: с виртуальными потоками число ожидающих запросов
+// больше не упирается в пул Tomcat, и без ограничения они все сразу ушли бы в MinIO.
+// Разрешение держится до получения заголовков ответа: чтение тела объекта (медленный клиент, ограничение скорости,
+// упреждающее чтение архива) слот не занимает и не может заблокировать остальные запросы узла.
+// Если слот не освободился за acquireTimeout, запрос отклоняется с 503. Листинг (лёгкие запросы страниц) не ограничивается.
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "minio", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class MinioStorageBackend implements StorageBackend {
+
+    private static final long MAX_COPY_OBJECT_SIZE = 5L * 1024 * 1024 * 1024; // Больше 5 ГБ CopyObject не копирует
+    private static final String ENCODING_METADATA = "encoding"; // Кодек сжатого объекта
+    private static final String DECODED_SIZE_METADATA = "decoded-size"; // Размер до сжатия
+    private static final String USER_METADATA_PREFIX = "X-Amz-Meta-";
+
+    private final MinioClient minioClient; // Клиент для работы с MinIO
+    private final MultipartMinioClient multipartMinioClient; // Клиент для multipart-загрузок
+    private final MinioBucketConfiguration minioBucketConfiguration; // Конфигурация MinIO (имя бакета и т.д.)
+
+    @Value("${minio.client.max-concurrent-requests}")
+    private int maxConcurrentRequests;
+
+    @Value("${minio.client.acquire-timeout}")
+    private Duration acquireTimeout; // Сколько запрос ждёт слот, прежде чем получит 503
+
+    private Semaphore requestPermits;
+
+    @PostConstruct
+    void createRequestPermits() {
+        requestPermits = new Semaphore(maxConcurrentRequests);
+    }
+
+    // Создание бакета, если его ещё нет
+    @Override
+    public void initialize() throws IOException {
+        String bucketName = minioBucketConfiguration.getBucketName();
+        execute(bucketName, () -> {
+            if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build())) {
+                minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+                log.info("Бакет {} успешно создан", bucketName);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public StorageObject stat(String objectName) throws IOException {
+        StatObjectResponse stat = execute(objectName, () -> minioClient.statObject(StatObjectArgs.builder()
+                .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
+                .object(objectName) // Указываем полный путь к объекту
+                .build()));
+        String encoding = userMetadata(stat.userMetadata(), ENCODING_METADATA);
+        String decodedSize = userMetadata(stat.userMetadata(), DECODED_SIZE_METADATA);
+        return new StorageObject(objectName, stat.size(), unquote(stat.etag()), stat.lastModified(), stat.contentType(),
+                encoding, encoding != null && decodedSize != null ? Long.parseLong(decodedSize) : stat.size());
+    }
+
+    @Override
+    public Iterator<StorageObject> list(String prefix, String startAfter) {
+        ListObjectsArgs.Builder args = ListObjectsArgs.builder()
+                .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
+                .prefix(prefix) // Все объекты под префиксом
+                .recursive(true) // Рекурсивно
+                .includeUserMetadata(true); // Кодек и исходный размер сжатых объектов (расширение листинга MinIO)
+        if (startAfter != null) {
+            args.startAfter(startAfter);
+        }
+        Iterator<Result<Item>> results = minioClient.listObjects(args.build()).iterator();
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return results.hasNext();
+            }
+
+            @Override
+            public StorageObject next() {
+                try {
+                    Item item = results.next().get();
+                    Map<String, String> metadata = item.userMetadata() != null ? item.userMetadata() : Map.of();
+                    String encoding = userMetadata(metadata, ENCODING_METADATA);
+                    String decodedSize = userMetadata(metadata, DECODED_SIZE_METADATA);
+                    return new StorageObject(item.objectName(), item.size(), unquote(item.etag()),
+                            item.isDir() ? null : item.lastModified(), null,
+                            encoding, encoding != null && decodedSize != null ? Long.parseLong(decodedSize) : item.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (MinioException | GeneralSecurityException e) {
+                    throw new UncheckedIOException(storageException(e, prefix));
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream get(String objectName, long offset, long length) throws IOException {
+        GetObjectArgs.Builder args = GetObjectArgs.builder()
+                .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
+                .object(objectName); // Указываем полный путь к объекту
+        if (length == 0) {
+            return InputStream.nullInputStream(); // MinIO не принимает диапазон нулевой длины
+        }
+        if (offset > 0) {
+            args.offset(offset); // Начало диапазона
+        }
+        if (length > 0) {
+            args.offset(offset).length(length); // Длина диапазона
+        }
+        return execute(objectName, () -> minioClient.getObject(args.build()));
+    }
+
+    @Override
+    public StorageObject put(String objectName, InputStream stream, long size, String contentType) throws IOException {
+        PutObjectArgs.Builder args = PutObjectArgs.builder()
+                .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
+                .object(objectName) // Указываем полный путь к объекту
+                .stream(stream, size, -1); // Передаем содержимое
+        if (contentType != null) {
+            args.contentType(contentType);
+        }
+        ObjectWriteResponse response = execute(objectName, () -> minioClient.putObject(args.build()));
+        return new StorageObject(objectName, size, unquote(response.etag()), ZonedDateTime.now(), contentType);
+    }
+
+    // Метаданные сжатия хранятся как пользовательские (x-amz-meta-*), а не в Content-Encoding:
+    // иначе HTTP-клиент SDK сам распаковывал бы ответ на полное чтение объекта
+    @Override
+    public StorageObject putEncoded(String objectName, InputStream stream, long size, String contentType,
+                                    String encoding, long decodedSize) throws IOException {
+        PutObjectArgs.Builder args = PutObjectArgs.builder()
+                .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
+                .object(objectName) // Указываем полный путь к объекту
+                .userMetadata(encodingMetadata(encoding, decodedSize)) // Кодек и исходный размер
+                .stream(stream, size, -1); // Передаем содержимое
+        if (contentType != null) {
+            args.contentType(contentType);
+        }
+        ObjectWriteResponse response = execute(objectName, () -> minioClient.putObject(args.build()));
+        return new StorageObject(objectName, size, unquote(response.etag()), ZonedDateTime.now(), contentType, encoding, decodedSize);
+    }
+
+    @Override
+    public void copy(String sourceObject, String targetObject, long size) throws IOException {
+        String bucketName = minioBucketConfiguration.getBucketName();
+        // CopyObject переносит метаданные сам, а ComposeObject — нет, поэтому для больших объектов они читаются заранее
+        StorageObject source = size > MAX_COPY_OBJECT_SIZE ? stat(sourceObject) : null;
+        execute(sourceObject, () -> {
+            if (source != null) {
+                // Большие объекты MinIO копирует по частям на своей стороне
+                ComposeObjectArgs.Builder args = ComposeObjectArgs.builder()
+                        .bucket(bucketName) // Указываем бакет
+                        .object(targetObject) // Указываем целевой путь
+                        .sources(List.of(ComposeSource.builder()
+                                .bucket(bucketName) // Указываем бакет
+                                .object(sourceObject) // Указываем исходный путь
+                                .build()));
+                if (source.isEncoded()) {
+                    args.userMetadata(encodingMetadata(source.encoding(), source.decodedSize()));
+                }
+                return minioClient.composeObject(args.build());
+            }
+            return minioClient.copyObject(CopyObjectArgs.builder()
+                    .bucket(bucketName) // Указываем бакет
+                    .object(targetObject) // Указываем целевой путь
+                    .source(CopySource.builder()
+                            .bucket(bucketName) // Указываем бакет
+                            .object(sourceObject) // Указываем исходный путь
+                            .build())
+                    .build());
+        });
+    }
+
+    @Override
+    public void delete(String objectName) throws IOException {
+        execute(objectName, () -> {
+            minioClient.removeObject(RemoveObjectArgs.builder()
+                    .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
+                    .object(objectName) // Указываем полный путь к объекту
+                    .build());
+            return null;
+        });
+    }
+
+    @Override
+    public List<String> deleteAll(List<String> objectNames) throws IOException {
+        return execute(objectNames.isEmpty() ? "" : objectNames.get(0), () -> {
+            List<String> failed = new ArrayList<>();
+            // removeObjects ленивый: запрос выполняется при обходе результата, который содержит только ошибки
+            Iterable<Result<DeleteError>> results = minioClient.removeObjects(RemoveObjectsArgs.builder()
+                    .bucket(minioBucketConfiguration.getBucketName()) // Указываем бакет
+                    .objects(objectNames.stream().map(DeleteObject::new).toList()) // Пачка ключей
+                    .build());
+            for (Result<DeleteError> result : results) {
+                DeleteError error = result.get();
+                log.warn("Не удалось удалить объект {}: {}", error.objectName(), error.message());
+                failed.add(error.objectName());
+            }
+            return failed;
+        });
+    }
+
+    @Override
+    public String createMultipartUpload(String objectName) throws IOException {
+        return execute(objectName, () -> multipartMinioClient.createUpload(minioBucketConfiguration.getBucketName(), objectName));
+    }
+
+    @Override
+    public String uploadPart(String objectName, String uploadId, int partNumber, InputStream data, long length) throws IOException {
+        return execute(objectName, () -> multipartMinioClient.uploadPart(minioBucketConfiguration.getBucketName(),
+                objectName, uploadId, partNumber, data, length));
+    }
+
+    @Override
+    public String uploadPartCopy(String objectName, String uploadId, int partNumber,
+                                 String sourceObject, long offset, long length) throws IOException {
+        return unquote(execute(sourceObject, () -> multipartMinioClient.uploadPartCopy(minioBucketConfiguration.getBucketName(),
+                objectName, uploadId, partNumber, sourceObject, offset, length)));
+    }
+
+    @Override
+    public List<UploadedPart> listParts(String objectName, String uploadId) throws IOException {
+        return execute(objectName, () -> multipartMinioClient.listUploadedParts(minioBucketConfiguration.getBucketName(), objectName, uploadId))
+                .stream()
+                .map(part -> new UploadedPart(part.partNumber(), part.etag()))
+                .toList();
+    }
+
+    @Override
+    public StorageObject completeMultipartUpload(String objectName, String uploadId, List<UploadedPart> parts) throws IOException {
+        Part[] completedParts = parts.stream()
+                .map(part -> new Part(part.partNumber(), part.etag()))
+                .toArray(Part[]::new);
+        execute(objectName, () -> multipartMinioClient.completeUpload(minioBucketConfiguration.getBucketName(), objectName, uploadId, completedParts));
+        return stat(objectName); // Ответ CompleteMultipartUpload не содержит размера собранного объекта
+    }
+
+    @Override
+    public void abortMultipartUpload(String objectName, String uploadId) throws IOException {
+        execute(objectName, () -> {
+            multipartMinioClient.abortUpload(minioBucketConfiguration.getBucketName(), objectName, uploadId);
+            return null;
+        });
+    }
+
+    // Запрос к MinIO под разрешением семафора
+    private <T> T execute(String objectName, MinioCall<T> call) throws IOException {
+        acquirePermit();
+        try {
+            return call.execute();
+        } catch (MinioException | GeneralSecurityException e) {
+            throw storageException(e, objectName);
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    private void acquirePermit() throws InterruptedIOException {
+        try {
+            if (!requestPermits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new ServiceUnavailableException("Too many concurrent storage requests, try again later",
+                        Math.max(1, acquireTimeout.toSeconds()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a MinIO request slot");
+        }
+    }
+
+    // Ошибки SDK приводятся к IOException; отсутствующий объект — NoSuchFileException
+    private static IOException storageException(Exception e, String objectName) {
+        if (e instanceof ErrorResponseException error && error.errorResponse() != null
+                && ("NoSuchKey".equals(error.errorResponse().code()) || "NoSuchUpload".equals(error.errorResponse().code()))) {
+            NoSuchFileException notFound = new NoSuchFileException(objectName);
+            notFound.initCause(e);
+            return notFound;
+        }
+        return new IOException("Storage request failed: " + objectName, e);
+    }
+
+    private static Map<String, String> encodingMetadata(String encoding, long decodedSize) {
+        return Map.of(ENCODING_METADATA, encoding, DECODED_SIZE_METADATA, String.valueOf(decodedSize));
+    }
+
+    // Регистр имён заголовков метаданных зависит от сервера; в листинге имена приходят с префиксом X-Amz-Meta-
+    private static String userMetadata(Map<String, String> metadata, String key) {
+        return metadata.entrySet().stream()
+                .filter(entry -> entry.getKey().equalsIgnoreCase(key) || entry.getKey().equalsIgnoreCase(USER_METADATA_PREFIX + key))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static String unquote(String etag) {
+        return etag != null ? etag.replace("\"", "") : null;
+    }
+
+    @FunctionalInterface
+    private interface MinioCall<T> {
+        T execute() throws MinioException, GeneralSecurityException, IOException;
+    }
+}
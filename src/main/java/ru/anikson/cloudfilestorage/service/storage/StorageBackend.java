@@ -0,0 +1,74 @@
+package ru.anikson.cloudfilestorage.service.storage;
+
+import ru.anikson.cloudfilestorage.dto.storage.StorageObject;
+import ru.anikson.cloudfilestorage.dto.storage.UploadedPart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+// Хранилище содержимого файлов. Ключи — полные имена объектов (user-<name>-files/..., blobs/...),
+// папки — пустые объекты с "/" на конце. Реализация выбирается свойством storage.backend.
+// Ошибки — IOException; отсутствующий объект — NoSuchFileException.
+public interface StorageBackend {
+
+    int MAX_DELETE_BATCH = 1000; // Лимит S3 на один DeleteObjects
+
+    // Подготовка хранилища при старте (например, создание бакета)
+    void initialize() throws IOException;
+
+    StorageObject stat(String objectName) throws IOException;
+
+    // Рекурсивный листинг префикса в порядке ключей, начиная после startAfter (null — с начала).
+    // Страницы запрашиваются по мере обхода; ошибка чтения страницы — UncheckedIOException.
+    // Сжатые объекты приходят с encoding и decodedSize, как из stat.
+    Iterator<StorageObject> list(String prefix, String startAfter);
+
+    // Чтение диапазона объекта; length < 0 — до конца
+    InputStream get(String objectName, long offset, long length) throws IOException;
+
+    // Запись объекта из потока известного размера
+    StorageObject put(String objectName, InputStream stream, long size, String contentType) throws IOException;
+
+    // Запись сжатого объекта: кодек и размер исходного содержимого сохраняются в метаданных объекта,
+    // stat возвращает их в encoding и decodedSize, а get отдаёт байты как есть
+    StorageObject putEncoded(String objectName, InputStream stream, long size, String contentType,
+                             String encoding, long decodedSize) throws IOException;
+
+    // Может ли хранилище сохранить метаданные сжатого объекта
+    default boolean supportsEncoding() {
+        return true;
+    }
+
+    // Копирование на стороне хранилища вместе с метаданными; size — размер источника (известен из листинга или stat)
+    void copy(String sourceObject, String targetObject, long size) throws IOException;
+
+    void delete(String objectName) throws IOException;
+
+    // Удаление пачки ключей (не больше MAX_DELETE_BATCH), возвращает ключи, которые удалить не удалось
+    List<String> deleteAll(List<String> objectNames) throws IOException;
+
+    // Загрузка частями: части можно присылать в любом порядке и повторять
+    String createMultipartUpload(String objectName) throws IOException;
+
+    // Загрузка одной части, возвращает её ETag
+    String uploadPart(String objectName, String uploadId, int partNumber, InputStream data, long length) throws IOException;
+
+    // Часть из диапазона [offset, offset + length) другого объекта, скопированная на стороне хранилища, возвращает её ETag
+    String uploadPartCopy(String objectName, String uploadId, int partNumber,
+                          String sourceObject, long offset, long length) throws IOException;
+
+    List<UploadedPart> listParts(String objectName, String uploadId) throws IOException;
+
+    StorageObject completeMultipartUpload(String objectName, String uploadId, List<UploadedPart> parts) throws IOException;
+
+    void abortMultipartUpload(String objectName, String uploadId) throws IOException;
+
+    // Файл объекта на локальном диске, если хранилище его даёт: такой объект отдаётся клиенту через sendfile
+    default Optional<Path> localFile(String objectName) throws IOException {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,7 @@
+package ru.anikson.cloudfilestorage.service.transfer;
+
+// Направление передачи: у загрузки и скачивания раздельные ведра токенов, слоты одновременных передач общие
+public enum TransferDirection {
+    UPLOAD,
+    DOWNLOAD
+}
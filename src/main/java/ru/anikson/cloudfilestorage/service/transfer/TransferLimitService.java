@@ -0,0 +1,261 @@
+package ru.anikson.cloudfilestorage.service.transfer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import ru.anikson.cloudfilestorage.exception.TooManyRequestsException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Ограничение передачи данных на пользователя: скорость (ведро токенов) и число одновременных передач.
+// Состояние хранится в Redis и общее для всех узлов; проверка и списание — атомарные Lua-скрипты.
+// Лимит одновременных передач и пустое ведро в начале передачи дают 429 с Retry-After,
+// а уже идущая передача не прерывается, а замедляется до скорости тарифа.
+// При недоступности Redis передачи не ограничиваются: ограничение не должно ломать скачивание.
+// Аренду слотов идущих передач узел продлевает по таймеру: передача тарифа без ограничения скорости
+// не списывает токены, но её слот не должен истечь посреди долгого скачивания.
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransferLimitService {
+
+    private static final String KEY_PREFIX = "transfer-limit:";
+    private static final RedisScript<Long> ACQUIRE_SLOT =
+            RedisScript.of(new ClassPathResource("scripts/transfer-slot-acquire.lua"), Long.class);
+    private static final RedisScript<Long> RENEW_SLOTS =
+            RedisScript.of(new ClassPathResource("scripts/transfer-slot-renew.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CONSUME_TOKENS =
+            RedisScript.of(new ClassPathResource("scripts/transfer-tokens-consume.lua"), List.class);
+
+    private final StringRedisTemplate redisTemplate; // Ведра токенов и слоты передач
+    private final MeterRegistry meterRegistry; // Счётчик отказов
+
+    private final Map<String, ActiveSlot> activeSlots = new ConcurrentHashMap<>(); // Слоты передач этого узла по идентификатору
+    private ScheduledExecutorService leaseRenewer;
+
+    @Value("${transfer.limit.default.bytes-per-second}")
+    private long defaultBytesPerSecond;
+
+    @Value("${transfer.limit.default.burst-bytes}")
+    private long defaultBurstBytes;
+
+    @Value("${transfer.limit.default.concurrent-transfers}")
+    private int defaultConcurrentTransfers;
+
+    @Value("${transfer.limit.premium.bytes-per-second}")
+    private long premiumBytesPerSecond;
+
+    @Value("${transfer.limit.premium.burst-bytes}")
+    private long premiumBurstBytes;
+
+    @Value("${transfer.limit.premium.concurrent-transfers}")
+    private int premiumConcurrentTransfers;
+
+    @Value("${transfer.limit.premium.usernames}")
+    private Set<String> premiumUsernames;
+
+    @Value("${transfer.limit.chunk-bytes}")
+    private long chunkBytes; // Порция токенов на один запрос к Redis
+
+    @Value("${transfer.limit.max-initial-wait}")
+    private Duration maxInitialWait; // Сколько передача может ждать токены до первого байта, прежде чем получит 429
+
+    @Value("${transfer.limit.lease}")
+    private Duration lease; // Срок аренды слота: продлевается по таймеру, пока передача идёт; освобождает слоты упавших узлов
+
+    @Value("${transfer.limit.max-duration}")
+    private Duration maxDuration; // Дольше аренда не продлевается: слот так и не закрытой передачи истечёт сам
+
+    @Value("${transfer.limit.retry-after}")
+    private Duration retryAfter; // Retry-After при исчерпании слотов
+
+    // Продление раз в треть срока аренды: один пропущенный запуск (пауза GC, сбой Redis) слот не теряет
+    @PostConstruct
+    void startLeaseRenewal() {
+        long periodMillis = Math.max(1000, lease.toMillis() / 3);
+        leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transfer-lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        leaseRenewer.scheduleWithFixedDelay(this::renewLeases, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopLeaseRenewal() {
+        leaseRenewer.shutdownNow();
+    }
+
+    // Начало передачи: занимает слот и первую порцию токенов или отказывает с 429
+    public TransferPermit acquire(String username, TransferDirection direction) {
+        TransferTier tier = tierOf(username);
+        if (!tier.isRateLimited() && !tier.isConcurrencyLimited()) {
+            return TransferPermit.UNLIMITED;
+        }
+        String transferId = tier.isConcurrencyLimited() ? UUID.randomUUID().toString() : null;
+        try {
+            if (transferId != null) {
+                Long acquired = redisTemplate.execute(ACQUIRE_SLOT, List.of(slotsKey(username)),
+                        String.valueOf(tier.concurrentTransfers()), transferId, String.valueOf(lease.toMillis()));
+                if (acquired == null || acquired == 0) {
+                    reject(direction, "concurrent-transfers");
+                    throw new TooManyRequestsException("Too many concurrent transfers, limit is "
+                            + tier.concurrentTransfers(), Math.max(1, retryAfter.toSeconds()));
+                }
+                activeSlots.put(transferId, new ActiveSlot(username, Instant.now()));
+            }
+            long credit = 0;
+            if (tier.isRateLimited()) {
+                long chunk = chunkSize(tier);
+                List<?> result = consume(username, direction, tier, transferId, chunk, maxInitialWait.toMillis());
+                long waitMillis = ((Number) result.get(1)).longValue();
+                if (((Number) result.get(0)).longValue() == 0) {
+                    release(username, transferId);
+                    reject(direction, "bandwidth");
+                    throw new TooManyRequestsException("Transfer rate limit exceeded",
+                            Math.max(1, Duration.ofMillis(waitMillis).toSeconds() + 1));
+                }
+                sleep(waitMillis); // Первая порция уже списана, ожидание не больше maxInitialWait
+                credit = chunk;
+            }
+            return new TransferPermit(this, username, direction, tier, transferId, credit);
+        } catch (DataAccessException e) {
+            log.warn("Ограничение передачи для {} не применено: {}", username, e.getMessage());
+            release(username, transferId);
+            return TransferPermit.UNLIMITED;
+        } catch (InterruptedIOException e) {
+            release(username, transferId);
+            throw new TooManyRequestsException("Transfer was interrupted while waiting for the rate limit",
+                    Math.max(1, retryAfter.toSeconds()));
+        }
+    }
+
+    // Следующая порция токенов идущей передачи: списывается сразу, а поток ждёт, пока ведро её покроет
+    long awaitTokens(String username, TransferDirection direction, TransferTier tier, String transferId) throws IOException {
+        long chunk = chunkSize(tier);
+        try {
+            List<?> result = consume(username, direction, tier, transferId, chunk, -1);
+            sleep(((Number) result.get(1)).longValue());
+        } catch (DataAccessException e) {
+            log.debug("Токены передачи для {} не списаны: {}", username, e.getMessage());
+        }
+        return chunk;
+    }
+
+    void release(String username, String transferId) {
+        if (transferId == null) {
+            return;
+        }
+        activeSlots.remove(transferId);
+        try {
+            redisTemplate.opsForZSet().remove(slotsKey(username), transferId);
+        } catch (DataAccessException e) {
+            log.warn("Слот передачи {} пользователя {} не освобождён, он истечёт сам: {}", transferId, username, e.getMessage());
+        }
+    }
+
+    // Продление аренды всех слотов узла, по одному скрипту на пользователя.
+    // Слоты старше maxDuration больше не продлеваются: если разрешение потеряно без закрытия
+    // (ошибка между занятием слота и началом передачи), пользователь не лишается слота навсегда.
+    void renewLeases() {
+        Instant renewUntil = Instant.now().minus(maxDuration);
+        activeSlots.entrySet().removeIf(entry -> {
+            if (entry.getValue().acquiredAt().isAfter(renewUntil)) {
+                return false;
+            }
+            log.warn("Передача {} пользователя {} длится дольше {}, аренда её слота больше не продлевается",
+                    entry.getKey(), entry.getValue().username(), maxDuration);
+            return true;
+        });
+        Map<String, List<String>> transfersByUser = activeSlots.entrySet().stream()
+                .collect(Collectors.groupingBy(entry -> entry.getValue().username(),
+                        Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+        transfersByUser.forEach((username, transferIds) -> {
+            List<String> args = new ArrayList<>(transferIds.size() + 1);
+            args.add(String.valueOf(lease.toMillis()));
+            args.addAll(transferIds);
+            try {
+                redisTemplate.execute(RENEW_SLOTS, List.of(slotsKey(username)), args.toArray());
+            } catch (RuntimeException e) {
+                log.warn("Аренда слотов передач пользователя {} не продлена: {}", username, e.getMessage());
+            }
+        });
+    }
+
+    TransferTier tierOf(String username) {
+        if (premiumUsernames.contains(username)) {
+            return new TransferTier("premium", premiumBytesPerSecond, premiumBurstBytes, premiumConcurrentTransfers);
+        }
+        return new TransferTier("default", defaultBytesPerSecond, defaultBurstBytes, defaultConcurrentTransfers);
+    }
+
+    private List<?> consume(String username, TransferDirection direction, TransferTier tier, String transferId,
+                            long bytes, long maxWaitMillis) {
+        return redisTemplate.execute(CONSUME_TOKENS, List.of(bucketKey(username, direction), slotsKey(username)),
+                String.valueOf(tier.bytesPerSecond()), String.valueOf(Math.max(tier.burstBytes(), bytes)),
+                String.valueOf(bytes), String.valueOf(maxWaitMillis),
+                transferId != null ? transferId : "", String.valueOf(lease.toMillis()));
+    }
+
+    private long chunkSize(TransferTier tier) {
+        return tier.burstBytes() > 0 ? Math.min(chunkBytes, tier.burstBytes()) : chunkBytes;
+    }
+
+    private void reject(TransferDirection direction, String reason) {
+        Counter.builder("transfer.limit.rejected")
+                .tag("direction", direction.name().toLowerCase(Locale.ROOT))
+                .tag("reason", reason)
+                .description("Transfers rejected by per-user limits")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for transfer tokens");
+        }
+    }
+
+    // Ключи пользователя в одном слоте кластера Redis (хеш-тег), чтобы скрипт мог работать с обоими
+    private static String bucketKey(String username, TransferDirection direction) {
+        return KEY_PREFIX + "{" + username + "}:" + direction.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static String slotsKey(String username) {
+        return KEY_PREFIX + "{" + username + "}:active";
+    }
+
+    // Слот, занятый на этом узле: чей он и когда занят
+    private record ActiveSlot(String username, Instant acquiredAt) {
+    }
+}
@@ -0,0 +1,152 @@
+package ru.anikson.cloudfilestorage.service.transfer;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Разрешение на одну передачу данных пользователя: держит слот одновременной передачи
+// и ограничивает скорость потоков, обёрнутых через throttle. Закрытие освобождает слот (повторное — ничего не делает).
+// Токены берутся из ведра порциями по chunkBytes, поэтому на порцию приходится один запрос к Redis.
+public final class TransferPermit implements AutoCloseable {
+
+    // Передача без ограничений: ни слота, ни ведра токенов
+    public static final TransferPermit UNLIMITED = new TransferPermit(null, null, null, null, null, 0);
+
+    private final TransferLimitService limitService;
+    private final String username;
+    private final TransferDirection direction;
+    private final TransferTier tier;
+    private final String transferId; // null, если слот не занимался
+    private final AtomicBoolean released = new AtomicBoolean();
+    private final ReentrantLock creditLock = new ReentrantLock(); // Под ним ждут токены: synchronized закрепил бы виртуальный поток
+    private long credit; // Уже списанные из ведра, но ещё не переданные байты
+
+    TransferPermit(TransferLimitService limitService, String username, TransferDirection direction,
+                   TransferTier tier, String transferId, long initialCredit) {
+        this.limitService = limitService;
+        this.username = username;
+        this.direction = direction;
+        this.tier = tier;
+        this.transferId = transferId;
+        this.credit = initialCredit;
+    }
+
+    // Ограничена ли скорость: такую передачу нельзя отдать через sendfile, байты должны идти через приложение.
+    // Слот без ограничения скорости sendfile не мешает: контроллер освобождает его, передав файл Tomcat.
+    public boolean isLimited() {
+        return tier != null && tier.isRateLimited();
+    }
+
+    public InputStream throttle(InputStream stream) {
+        return tier != null && tier.isRateLimited() ? new ThrottledInputStream(stream) : stream;
+    }
+
+    public OutputStream throttle(OutputStream stream) {
+        return tier != null && tier.isRateLimited() ? new ThrottledOutputStream(stream) : stream;
+    }
+
+    // Поток одной передачи (скачивание файла): ограничен по скорости и освобождает разрешение при закрытии
+    public InputStream releaseOnClose(InputStream stream) {
+        return new FilterInputStream(throttle(stream)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    TransferPermit.this.close();
+                }
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (transferId != null && released.compareAndSet(false, true)) {
+            limitService.release(username, transferId);
+        }
+    }
+
+    // Сколько байт можно передать прямо сейчас; при пустом кредите ждёт следующую порцию токенов.
+    // Потоки одной передачи (файлы пакета) пишут параллельно, поэтому кредит общий и под блокировкой.
+    private int reserve(int requested) throws IOException {
+        creditLock.lock();
+        try {
+            if (credit <= 0) {
+                credit += limitService.awaitTokens(username, direction, tier, transferId);
+            }
+            int granted = (int) Math.min(requested, credit);
+            credit -= granted;
+            return granted;
+        } finally {
+            creditLock.unlock();
+        }
+    }
+
+    // Возврат непереданной части (поток прочитал меньше, чем было выделено)
+    private void refund(int unused) {
+        if (unused <= 0) {
+            return;
+        }
+        creditLock.lock();
+        try {
+            credit += unused;
+        } finally {
+            creditLock.unlock();
+        }
+    }
+
+    private class ThrottledInputStream extends FilterInputStream {
+
+        private ThrottledInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            reserve(1);
+            int b = super.read();
+            if (b < 0) {
+                refund(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int granted = reserve(len);
+            int read = super.read(b, off, granted);
+            refund(granted - Math.max(read, 0));
+            return read;
+        }
+    }
+
+    private class ThrottledOutputStream extends FilterOutputStream {
+
+        private ThrottledOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            reserve(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int granted = reserve(len);
+                out.write(b, off, granted);
+                off += granted;
+                len -= granted;
+            }
+        }
+    }
+}
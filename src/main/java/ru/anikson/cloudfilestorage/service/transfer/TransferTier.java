@@ -0,0 +1,14 @@
+package ru.anikson.cloudfilestorage.service.transfer;
+
+// Тариф передачи данных: скорость в байт/с и число одновременных передач (0 — без ограничения),
+// burstBytes — ёмкость ведра токенов, то есть сколько можно передать разом после простоя
+public record TransferTier(String name, long bytesPerSecond, long burstBytes, int concurrentTransfers) {
+
+    public boolean isRateLimited() {
+        return bytesPerSecond > 0;
+    }
+
+    public boolean isConcurrencyLimited() {
+        return concurrentTransfers > 0;
+    }
+}
@@ -10,11 +10,13 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import ru.anikson.cloudfilestorage.dao.UserRepository;
 import ru.anikson.cloudfilestorage.dto.user.UserResponse;
 import ru.anikson.cloudfilestorage.entity.User;
+import ru.anikson.cloudfilestorage.service.user.security.CustomUserDetailsService;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +26,7 @@ public class AuthService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
+    private final CustomUserDetailsService customUserDetailsService;
 
     public UserResponse registerAndAuthenticate(User user, HttpServletRequest request) {
         log.info("Регистрация пользователя {}", user.getUsername());
@@ -38,15 +41,16 @@ public class AuthService {
         newUser.setPassword(passwordEncoder.encode(user.getPassword()));
 
         userRepository.save(newUser);
-        log.info("Пользователь зарегистрирован: " + newUser.getUsername(), newUser.getPassword());
+        log.info("Пользователь зарегистрирован: {}", newUser.getUsername());
 
-        User userForAuth = new User();
-        userForAuth.setUsername(user.getUsername());
-        userForAuth.setPassword(user.getPassword());
+        // Пароль только что захеширован, повторная проверка через AuthenticationManager
+        // стоила бы ещё одного чтения из базы и ещё одного BCrypt
+        UserDetails userDetails = customUserDetailsService.toUserDetails(newUser);
+        UsernamePasswordAuthenticationToken authentication = UsernamePasswordAuthenticationToken.authenticated(
+                userDetails, null, userDetails.getAuthorities());
+        authentication.eraseCredentials(); // Как ProviderManager после успешного входа
 
-        log.info("Юзер для аутентификации" + userForAuth.getUsername(), user.getPassword());
-
-        return authenticateUser(userForAuth, request);
+        return startSession(authentication, user.getUsername(), request);
     }
 
     public UserResponse authenticateUser(User user, HttpServletRequest request) {
@@ -58,6 +62,11 @@ public class AuthService {
         );
         log.info("Учетные данные пользователя {} проверены", user.getUsername());
 
+        return startSession(authentication, user.getUsername(), request);
+    }
+
+    // Сохранение аутентификации в сессии
+    private UserResponse startSession(Authentication authentication, String username, HttpServletRequest request) {
         // Получаем текущий SecurityContext из SecurityContextHolder
 // SecurityContextHolder — это глобальное хранилище, которое содержит информацию об аутентификации текущего запроса
         SecurityContext securityContext = SecurityContextHolder.getContext();
@@ -76,10 +85,10 @@ public class AuthService {
 // Это позволяет Spring Security восстановить информацию об аутентификации при следующем запросе
 // Обычно Spring Security делает это автоматически через SecurityContextPersistenceFilter, но здесь мы делаем это вручную
         session.setAttribute("SPRING_SECURITY_CONTEXT", securityContext);
-        log.info("Сессия создана для пользователя {}: {}", user.getUsername(), session.getId());
+        log.info("Сессия создана для пользователя {}: {}", username, session.getId());
 
-        log.info("Пользователь {} успешно вошел в систему", user.getUsername());
-        return new UserResponse(user.getUsername());
+        log.info("Пользователь {} успешно вошел в систему", username);
+        return new UserResponse(username);
     }
 }
 
@@ -0,0 +1,78 @@
+package ru.anikson.cloudfilestorage.service.user.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.anikson.cloudfilestorage.exception.ServiceUnavailableException;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Хеширование паролей в отдельном ограниченном пуле.
+// BCrypt намеренно дорогой: при всплеске входов на потоках запросов он занимает все ядра и тормозит остальные запросы.
+// Пул по числу ядер с ограниченной очередью держит нагрузку постоянной; при переполнении очереди
+// или слишком долгом ожидании вход отклоняется с 503, а задача снимается с очереди.
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final AsyncTaskExecutor executor;
+    private final long maxWaitMillis;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, AsyncTaskExecutor executor, Duration maxWait) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.maxWaitMillis = maxWait.toMillis();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return call(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return call(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword); // Разбор префикса хеша, пул не нужен
+    }
+
+    private <T> T call(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (TaskRejectedException e) {
+            log.warn("Очередь проверки паролей переполнена");
+            throw overloaded();
+        }
+        try {
+            return future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false); // Задача из очереди уже не выполнится
+            log.warn("Проверка пароля не дождалась очереди за {} мс", maxWaitMillis);
+            throw overloaded();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw overloaded();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private ServiceUnavailableException overloaded() {
+        return new ServiceUnavailableException("Too many sign-in attempts, try again later",
+                Math.max(1, TimeUnit.MILLISECONDS.toSeconds(maxWaitMillis)));
+    }
+}
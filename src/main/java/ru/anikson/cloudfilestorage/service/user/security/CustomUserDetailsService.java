@@ -1,7 +1,14 @@
 package ru.anikson.cloudfilestorage.service.user.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -9,23 +16,66 @@ import org.springframework.stereotype.Service;
 import ru.anikson.cloudfilestorage.dao.UserRepository;
 import ru.anikson.cloudfilestorage.entity.User;
 
+import java.time.Duration;
+
+// Пользователи для входа кэшируются ненадолго: при всплеске входов база не получает запрос на каждую попытку.
+// В кэше лежат логин и хеш пароля, а UserDetails каждый раз создаётся заново:
+// после аутентификации Spring Security стирает пароль в объекте пользователя.
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, MeterBinder {
 
     private final UserRepository userRepository;
 
+    private Cache<String, Credentials> userCache;
+
+    @Value("${auth.user-cache.max-size}")
+    private long userCacheMaxSize;
+
+    @Value("${auth.user-cache.ttl}")
+    private Duration userCacheTtl;
+
+    @PostConstruct
+    void init() {
+        userCache = Caffeine.newBuilder()
+                .maximumSize(userCacheMaxSize)
+                .expireAfterWrite(userCacheTtl)
+                .recordStats()
+                .build();
+    }
+
     // Метод, который Spring Security вызывает при аутентификации пользователя по логину.
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден"));
+        Credentials credentials = userCache.get(username, key -> userRepository.findByUsername(key)
+                .map(user -> new Credentials(user.getUsername(), user.getPassword()))
+                .orElse(null)); // Отсутствующий пользователь не кэшируется: он мог только что зарегистрироваться
+        if (credentials == null) {
+            throw new UsernameNotFoundException("Пользователь не найден");
+        }
+        return toUserDetails(credentials.username(), credentials.password());
+    }
 
+    // UserDetails только что сохранённого пользователя — без повторного чтения из базы
+    public UserDetails toUserDetails(User user) {
+        userCache.put(user.getUsername(), new Credentials(user.getUsername(), user.getPassword()));
+        return toUserDetails(user.getUsername(), user.getPassword());
+    }
+
+    // Создаем объект UserDetails, который Spring Security использует для проверки учетных данных.
+    private static UserDetails toUserDetails(String username, String password) {
         return org.springframework.security.core.userdetails.User
-                .withUsername(user.getUsername()) // Устанавливаем логин пользователя.
-                .password(user.getPassword()) // Устанавливаем пароль (зашифрованный).
+                .withUsername(username) // Устанавливаем логин пользователя.
+                .password(password) // Устанавливаем пароль (зашифрованный).
                 .build();
-    }// Создаем объект UserDetails, который Spring Security использует для проверки учетных данных.
-}
+    }
 
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, userCache, "auth-users");
+    }
+
+    private record Credentials(String username, String password) {
+    }
+}
@@ -0,0 +1,15 @@
+-- Занятие слота одновременной передачи пользователя.
+-- KEYS[1] — активные передачи пользователя (ZSET: идентификатор передачи -> срок аренды, мс)
+-- ARGV[1] — лимит одновременных передач, ARGV[2] — идентификатор передачи, ARGV[3] — срок аренды, мс
+-- Возвращает 1, если слот занят, иначе 0. Слоты с истёкшей арендой (упавший узел) освобождаются здесь же.
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local lease = tonumber(ARGV[3])
+
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now)
+if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[1]) then
+    return 0
+end
+redis.call('ZADD', KEYS[1], now + lease, ARGV[2])
+redis.call('PEXPIRE', KEYS[1], lease)
+return 1
@@ -0,0 +1,16 @@
+-- Продление аренды слотов идущих передач пользователя (по таймеру узла, независимо от скорости передачи).
+-- KEYS[1] — активные передачи пользователя (ZSET: идентификатор передачи -> срок аренды, мс)
+-- ARGV[1] — срок аренды, мс; ARGV[2..] — идентификаторы передач
+-- Уже истёкшие и освобождённые слоты не возвращаются (ZADD XX). Возвращает число продлённых слотов.
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local lease = tonumber(ARGV[1])
+
+local renewed = 0
+for i = 2, #ARGV do
+    renewed = renewed + redis.call('ZADD', KEYS[1], 'XX', 'CH', now + lease, ARGV[i])
+end
+if renewed > 0 then
+    redis.call('PEXPIRE', KEYS[1], lease)
+end
+return renewed
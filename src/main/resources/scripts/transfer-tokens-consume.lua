@@ -0,0 +1,35 @@
+-- Списание байт из ведра токенов пользователя.
+-- KEYS[1] — ведро (HASH: tokens, ts), KEYS[2] — активные передачи пользователя
+-- ARGV[1] — скорость, байт/с; ARGV[2] — ёмкость ведра; ARGV[3] — сколько байт списать;
+-- ARGV[4] — максимальное ожидание, мс (-1 — без ограничения); ARGV[5] — идентификатор передачи; ARGV[6] — срок аренды, мс
+-- Возвращает {списано (1/0), сколько ждать, мс}. Баланс может уйти в минус: передача ждёт, пока ведро наполнится,
+-- поэтому на каждую порцию нужен один запрос к Redis. При отказе (ожидание больше максимального) ничего не списывается.
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local rate = tonumber(ARGV[1])
+local burst = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+local maxWait = tonumber(ARGV[4])
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1]) or burst
+local ts = tonumber(state[2]) or now
+tokens = math.min(burst, tokens + math.max(0, now - ts) * rate / 1000)
+
+local wait = 0
+if tokens < requested then
+    wait = math.ceil((requested - tokens) * 1000 / rate)
+end
+if maxWait >= 0 and wait > maxWait then
+    return {0, wait}
+end
+
+tokens = tokens - requested
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+redis.call('PEXPIRE', KEYS[1], math.ceil((burst - tokens) * 1000 / rate) + 1000) -- Полное ведро можно не хранить
+if ARGV[5] ~= '' then
+    -- Идущая передача продлевает аренду своего слота
+    redis.call('ZADD', KEYS[2], 'XX', now + tonumber(ARGV[6]), ARGV[5])
+    redis.call('PEXPIRE', KEYS[2], ARGV[6])
+end
+return {1, wait}